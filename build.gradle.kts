@@ -118,6 +118,19 @@ sourceSets {
 //            include("**/*.java", "**/*.kt")
 //        }
     }
+
+    // JMH benchmarks. These are not part of the build, run them with 'gradle jmh'
+    create("jmh") {
+        java {
+            setSrcDirs(listOf("jmh"))
+
+            // want to include java files for the source. 'setSrcDirs' resets includes...
+            include("**/*.java")
+        }
+
+        compileClasspath += sourceSets["main"].output + sourceSets["main"].runtimeClasspath
+        runtimeClasspath += output + compileClasspath
+    }
 }
 
 repositories {
@@ -157,6 +170,34 @@ dependencies {
 
     testImplementation("junit:junit:4.13.2")
     testImplementation("ch.qos.logback:logback-classic:1.2.3")
+
+    val jmhVersion = "1.29"
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:$jmhVersion")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:$jmhVersion")
+}
+
+///////////////////////////////
+//////    BENCHMARKS
+////// ALL : 'gradle jmh'
+////// SOME: 'gradle jmh -Pjmh.include=AnsiOutputStreamBenchmark' (a regex of the benchmarks to run)
+///////////////////////////////
+tasks.register<JavaExec>("jmh") {
+    group = "verification"
+    description = "Runs the JMH benchmarks, measuring throughput and allocation rate"
+
+    dependsOn("jmhClasses")
+
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+
+    val include = project.findProperty("jmh.include")?.toString() ?: ""
+    val resultFile = "$buildDir/reports/jmh/results.json"
+
+    args(listOf(include, "-prof", "gc", "-rf", "json", "-rff", resultFile).filter { it.isNotEmpty() })
+
+    doFirst {
+        file(resultFile).parentFile.mkdirs()
+    }
 }
 
 publishToSonatype {
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dorkbox.console;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dorkbox.console.output.Ansi;
+import dorkbox.console.output.AnsiRenderer;
+import dorkbox.console.output.AnsiString;
+
+/**
+ * Throughput (lines per second) of producing ANSI encoded text, with one line produced per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public
+class AnsiBenchmark {
+    private final LogCorpus.NullOutputStream sink = new LogCorpus.NullOutputStream();
+
+    /**
+     * Assembles the line with an Ansi builder chain
+     */
+    @Benchmark
+    public
+    String builder(final LogCorpus corpus) {
+        return corpus.build(Ansi.ansi(), corpus.next()).toString();
+    }
+
+    /**
+     * Assembles the line with the (thread-local) pooled Ansi builder
+     */
+    @Benchmark
+    public
+    String builderPooled(final LogCorpus corpus) {
+        return corpus.build(Ansi.pooled(), corpus.next()).toString();
+    }
+
+    /**
+     * Assembles the line with an Ansi builder chain, that writes (UTF-8 encoded) directly to an output stream
+     */
+    @Benchmark
+    public
+    long builderToStream(final LogCorpus corpus) {
+        corpus.build(Ansi.ansi(sink), corpus.next()).newline().flush();
+        return sink.count;
+    }
+
+    /**
+     * Renders the line from the "@|code text|@" markup
+     */
+    @Benchmark
+    public
+    String render(final LogCorpus corpus) {
+        return AnsiRenderer.render(corpus.markup[corpus.next()]);
+    }
+
+    /**
+     * Renders the line from the "@|code text|@" markup, which was compiled (and cached) as a template
+     */
+    @Benchmark
+    public
+    String renderCompiled(final LogCorpus corpus) {
+        return AnsiRenderer.compile(corpus.markup[corpus.next()]).render();
+    }
+
+    /**
+     * Wraps the (ANSI encoded) line, which separates the plain text from the escape sequences
+     */
+    @Benchmark
+    public
+    int ansiString(final LogCorpus corpus) {
+        AnsiString string = new AnsiString(corpus.encoded[corpus.next()]);
+        return string.length();
+    }
+
+    /**
+     * Measures the number of console columns that the (ANSI encoded) line uses
+     */
+    @Benchmark
+    public
+    int displayWidth(final LogCorpus corpus) {
+        AnsiString string = new AnsiString(corpus.encoded[corpus.next()]);
+        return string.displayWidth();
+    }
+}
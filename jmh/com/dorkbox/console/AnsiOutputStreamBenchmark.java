@@ -0,0 +1,79 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dorkbox.console;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dorkbox.console.output.AnsiOutputStream;
+import dorkbox.console.output.HtmlAnsiOutputStream;
+
+/**
+ * Throughput (lines per second) of the output streams that process ANSI escape sequences, with one line written per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public
+class AnsiOutputStreamBenchmark {
+    private LogCorpus.NullOutputStream sink;
+
+    private AnsiOutputStream strip;
+    private HtmlAnsiOutputStream html;
+
+    @Setup
+    public
+    void setup() {
+        sink = new LogCorpus.NullOutputStream();
+
+        strip = new AnsiOutputStream(sink);
+        html = new HtmlAnsiOutputStream(sink);
+    }
+
+    /**
+     * Removes the escape sequences (which is what happens when the output is not a terminal)
+     */
+    @Benchmark
+    public
+    long strip(final LogCorpus corpus) throws IOException {
+        strip.write(corpus.encodedBytes[corpus.next()]);
+        return sink.count;
+    }
+
+    /**
+     * Converts the escape sequences to html
+     */
+    @Benchmark
+    public
+    long html(final LogCorpus corpus) throws IOException {
+        html.write(corpus.encodedBytes[corpus.next()]);
+        return sink.count;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dorkbox.console;
+
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import dorkbox.console.output.Ansi;
+import dorkbox.console.output.Color;
+
+/**
+ * Log lines (that look like the output of a typical logger) with 0, 2 or 10 ANSI escape sequences per line, in all the forms that the
+ * benchmarks need.
+ */
+@State(Scope.Thread)
+public
+class LogCorpus {
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    // a power of 2, so the next line is picked with a mask
+    private static final int LINE_COUNT = 256;
+
+    private static final String[] LEVELS = {"INFO ", "DEBUG", "WARN ", "ERROR", "TRACE"};
+    private static final Color[] LEVEL_COLORS = {Color.GREEN, Color.CYAN, Color.YELLOW, Color.RED, Color.WHITE};
+
+    private static final String[] LOGGERS = {"c.d.server.RequestHandler", "c.d.net.ConnectionPool", "c.d.db.QueryExecutor",
+                                             "c.d.cache.RegionCache", "c.d.auth.TokenValidator"};
+
+    private static final String[] MESSAGES = {"handled GET /api/v1/items/%d in %d ms", "opened connection #%d to 10.0.3.%d:5432",
+                                              "query returned %d rows in %d ms", "evicted %d entries from region %d",
+                                              "token for session %d expires in %d s"};
+
+    /**
+     * How many ANSI escape sequences are in each line
+     */
+    @Param({"0", "2", "10"})
+    public int escapesPerLine;
+
+    /**
+     * The lines, as they are written to an output stream (UTF-8, ANSI encoded, with a new line)
+     */
+    public byte[][] encodedBytes;
+
+    /**
+     * The lines, ANSI encoded
+     */
+    public String[] encoded;
+
+    /**
+     * The lines, with {@link dorkbox.console.output.AnsiRenderer} markup instead of ANSI escape sequences
+     */
+    public String[] markup;
+
+    /**
+     * The parts of the lines, to be assembled by the {@link Ansi} builder
+     */
+    public String[] timestamps;
+    public String[] levels;
+    public Color[] levelColors;
+    public String[] threads;
+    public String[] loggers;
+    public String[] messages;
+
+    private int index = 0;
+
+    @Setup
+    public
+    void setup() {
+        encodedBytes = new byte[LINE_COUNT][];
+        encoded = new String[LINE_COUNT];
+        markup = new String[LINE_COUNT];
+
+        timestamps = new String[LINE_COUNT];
+        levels = new String[LINE_COUNT];
+        levelColors = new Color[LINE_COUNT];
+        threads = new String[LINE_COUNT];
+        loggers = new String[LINE_COUNT];
+        messages = new String[LINE_COUNT];
+
+        for (int i = 0; i < LINE_COUNT; i++) {
+            int kind = i % LEVELS.length;
+
+            timestamps[i] = String.format("2026-10-17 14:%02d:%02d.%03d", (i / 60) % 60, i % 60, (i * 37) % 1000);
+            levels[i] = LEVELS[kind];
+            levelColors[i] = LEVEL_COLORS[kind];
+            threads[i] = "[worker-" + (i % 16) + "]";
+            loggers[i] = LOGGERS[(i * 7) % LOGGERS.length];
+            messages[i] = String.format(MESSAGES[(i * 3) % MESSAGES.length], 1000 + i * 13, i % 250);
+
+            encoded[i] = build(Ansi.ansi(), i).toString();
+            encodedBytes[i] = (encoded[i] + "\n").getBytes(CHARSET);
+            markup[i] = markup(i);
+        }
+    }
+
+    /**
+     * Assembles the line with the Ansi builder, using the configured number of escape sequences.
+     */
+    public
+    Ansi build(final Ansi ansi, final int i) {
+        switch (escapesPerLine) {
+            case 0:
+                return ansi.a(timestamps[i]).a(' ').a(levels[i]).a(' ').a(threads[i]).a(' ').a(loggers[i]).a(" - ").a(messages[i]);
+
+            case 2:
+                return ansi.a(timestamps[i]).a(' ')
+                           .fg(levelColors[i]).a(levels[i]).reset()
+                           .a(' ').a(threads[i]).a(' ').a(loggers[i]).a(" - ").a(messages[i]);
+
+            default:
+                return ansi.faint().a(timestamps[i]).reset().a(' ')
+                           .fg(levelColors[i]).bold().a(levels[i]).reset().a(' ')
+                           .fg(Color.MAGENTA).a(threads[i]).reset().a(' ')
+                           .fg(Color.CYAN).a(loggers[i]).reset().a(" - ")
+                           .underline().a(messages[i]).reset();
+        }
+    }
+
+    private
+    String markup(final int i) {
+        String color = levelColors[i].name().toLowerCase();
+
+        switch (escapesPerLine) {
+            case 0:
+                return timestamps[i] + " " + levels[i] + " " + threads[i] + " " + loggers[i] + " - " + messages[i];
+
+            case 2:
+                return timestamps[i] + " @|" + color + " " + levels[i] + "|@ " + threads[i] + " " + loggers[i] + " - " + messages[i];
+
+            default:
+                return "@|faint " + timestamps[i] + "|@ @|" + color + " " + levels[i] + "|@ @|magenta " + threads[i] + "|@ @|cyan " +
+                       loggers[i] + "|@ - @|underline " + messages[i] + "|@";
+        }
+    }
+
+    /**
+     * @return the index of the next line to use
+     */
+    public
+    int next() {
+        return index++ & (LINE_COUNT - 1);
+    }
+
+    /**
+     * Discards everything, so only the cost of producing the output is measured.
+     */
+    public static final
+    class NullOutputStream extends OutputStream {
+        public long count = 0;
+
+        @Override
+        public
+        void write(final int b) {
+            count++;
+        }
+
+        @Override
+        public
+        void write(final byte[] b, final int off, final int len) {
+            count += len;
+        }
+    }
+}
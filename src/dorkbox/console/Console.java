@@ -67,6 +67,27 @@ class Console {
     @Property
     public final static boolean ENABLE_BACKSPACE = true;
 
+    /**
+     * Enables line editing when reading a line (if ANSI is enabled): the arrow keys, Home/End, Delete, and Ctrl-A/E/B/F/D/K/U/W move the
+     * cursor or edit the line. The input is then echoed by the console instead of by the terminal.
+     */
+    @Property
+    public static boolean ENABLE_LINE_EDITING = false;
+
+    /**
+     * The number of lines that are kept in the history of line editing (recalled with the up/down arrows, and searched with Ctrl-R). 0
+     * disables the history.
+     */
+    @Property
+    public static int HISTORY_SIZE = 500;
+
+    /**
+     * The file that the history of line editing is saved to, so that it is kept between runs. If empty, the history is only kept in
+     * memory.
+     */
+    @Property
+    public static String HISTORY_FILE = "";
+
     /**
      * Used to determine what console to use/hook when AUTO is not correctly working.
      * Valid options are:
@@ -78,6 +99,36 @@ class Console {
     @Property
     public static final String INPUT_CONSOLE_TYPE = "AUTO";
 
+    /**
+     * If true, output to the ANSI System.out/err streams is written asynchronously. Writing only copies the output into a bounded buffer,
+     * and a background thread writes it to the console, so that a slow console (or a full pipe) does not stall the writing thread.
+     */
+    @Property
+    public static boolean ENABLE_ASYNC_OUTPUT = false;
+
+    /**
+     * Size (in bytes) of the buffer used for asynchronous output (for each of System.out/err). This is rounded up to a power of 2.
+     */
+    @Property
+    public static int ASYNC_OUTPUT_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Used to determine what happens to asynchronous output when the buffer is full.
+     * Valid options are:
+     *  BLOCK - wait until there is space in the buffer
+     *  DROP - discard the output that does not fit in the buffer
+     *  COALESCE - discard the output that does not fit in the buffer, and write a single notice with how much output was discarded
+     */
+    @Property
+    public static String ASYNC_OUTPUT_OVERFLOW = "BLOCK";
+
+    /**
+     * The number of compiled "@|code text|@" templates that are cached by AnsiRenderer.compile(). The least recently used template is
+     * discarded when there are more.
+     */
+    @Property
+    public static int ANSI_TEMPLATE_CACHE_SIZE = 512;
+
 
     /**
      * Gets the version number.
@@ -129,6 +180,8 @@ class Console {
     /**
      * If the standard out natively supports ANSI escape codes, then this just returns System.out (wrapped to reset ANSI stream on close),
      * otherwise it will provide an ANSI aware PrintStream which strips out the ANSI escape sequences.
+     * <p>
+     * If {@link #ENABLE_ASYNC_OUTPUT} is true, the output is written to the console by a background thread.
      *
      * @return a PrintStream which is ANSI aware.
      */
@@ -140,6 +193,8 @@ class Console {
     /**
      * If the standard out natively supports ANSI escape codes, then this just returns System.err (wrapped to reset ANSI stream on close),
      * otherwise it will provide an ANSI aware PrintStream which strips out the ANSI escape sequences.
+     * <p>
+     * If {@link #ENABLE_ASYNC_OUTPUT} is true, the output is written to the console by a background thread.
      *
      * @return a PrintStream which is ANSI aware.
      */
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.input;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The candidates that are found by a {@link Completer}. Only the first candidates (up to the limit, which is about as many as fit on
+ * the screen) are kept, the others are only counted, and are part of the text that all the candidates start with.
+ * <p>
+ * This is not thread safe.
+ */
+public final
+class Candidates {
+    private final int limit;
+    private final List<CharSequence> listed = new ArrayList<CharSequence>();
+    private int count = 0;
+
+    // all the candidates start with the first prefixLength chars of this
+    private CharSequence first = null;
+    private int prefixLength = 0;
+
+    /**
+     * @param limit the most candidates that are kept
+     */
+    public
+    Candidates(final int limit) {
+        this.limit = Math.max(1, limit);
+    }
+
+    /**
+     * Adds a candidate. It is only kept if there are fewer candidates than the limit.
+     *
+     * @return false if the limit is reached, so further candidates are only counted
+     */
+    public
+    boolean add(final CharSequence candidate) {
+        count++;
+        addPrefix(candidate);
+
+        if (listed.size() < limit) {
+            listed.add(candidate);
+        }
+        return listed.size() < limit;
+    }
+
+    /**
+     * Counts candidates that are not added (because the limit is reached), without creating them.
+     *
+     * @param count the number of candidates
+     * @param commonPrefix the text that all of them start with
+     */
+    public
+    void addUnlisted(final int count, final CharSequence commonPrefix) {
+        if (count > 0) {
+            this.count += count;
+            addPrefix(commonPrefix);
+        }
+    }
+
+    private
+    void addPrefix(final CharSequence text) {
+        if (first == null) {
+            first = text;
+            prefixLength = text.length();
+            return;
+        }
+
+        final int length = Math.min(prefixLength, text.length());
+        int i = 0;
+        while (i < length && text.charAt(i) == first.charAt(i)) {
+            i++;
+        }
+        prefixLength = i;
+    }
+
+    /**
+     * @return true if the limit is reached, so further candidates are only counted
+     */
+    public
+    boolean isFull() {
+        return listed.size() >= limit;
+    }
+
+    /**
+     * @return the number of candidates, including the ones that are only counted
+     */
+    public
+    int size() {
+        return count;
+    }
+
+    public
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @return the candidates that are kept (the first ones, up to the limit)
+     */
+    public
+    List<CharSequence> getListed() {
+        return listed;
+    }
+
+    /**
+     * @return the text that all the candidates start with
+     */
+    public
+    CharSequence getCommonPrefix() {
+        if (first == null) {
+            return "";
+        }
+
+        int length = prefixLength;
+
+        // never split a surrogate pair
+        if (length > 0 && length < first.length() && Character.isHighSurrogate(first.charAt(length - 1))) {
+            length--;
+        }
+        return first.subSequence(0, length);
+    }
+
+    void clear() {
+        listed.clear();
+        count = 0;
+        first = null;
+        prefixLength = 0;
+    }
+}
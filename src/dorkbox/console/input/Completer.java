@@ -0,0 +1,34 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.input;
+
+/**
+ * Completes the word before the cursor, when Tab is pressed while a line is read (see {@link Terminal#setCompleter(Completer)}).
+ */
+public
+interface Completer {
+    /**
+     * Finds every candidate that can replace the text from the returned position to the cursor.
+     *
+     * @param line the line that is being typed
+     * @param cursor the position of the cursor in the line
+     * @param candidates the candidates are added here. Only the first ones (up to a limit) are kept, so completers with many candidates
+     *        should stop once it is full, and only count the rest (see {@link Candidates#addUnlisted(int, CharSequence)}).
+     *
+     * @return the position in the line of the text that is replaced by a candidate, or -1 if there are no candidates
+     */
+    int complete(String line, int cursor, Candidates candidates);
+}
@@ -0,0 +1,499 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.input;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import dorkbox.console.Console;
+
+/**
+ * The lines that were typed, oldest first, and (optionally) saved to an append-only history file with one UTF-8 line per entry.
+ * <p>
+ * The history file is memory-mapped when it is loaded, and only its end is searched (backwards) for new lines: the lines that are kept,
+ * and as many again to know when the file has to be compacted. The rest of the file is never read, and a line is only decoded when it is
+ * recalled, so a large history file loads without parsing it.
+ * <p>
+ * Searching uses an in-memory index of the length and the first 8 UTF-8 bytes of every line, which is built when the history is first
+ * searched. A prefix of up to 8 bytes is found without reading the lines, and a longer prefix is only compared with the lines that start
+ * with the same 8 bytes.
+ * <p>
+ * Only the most recent {@link Console#HISTORY_SIZE} lines are kept. The file is compacted (rewritten with only those lines) once it has
+ * twice as many lines.
+ * <p>
+ * This is not thread safe, access must be synchronized externally.
+ */
+final
+class History {
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(History.class);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // the number of bytes at the start of every line that are in the search index
+    private static final int PREFIX_LENGTH = 8;
+
+    private final int maxSize;
+    private final File file;
+
+    // the lines at the end of the history file when it was loaded. Line i starts at offsets[i], and the next line starts at offsets[i + 1]
+    private MappedByteBuffer mapped;
+    private int[] offsets = new int[] {0};
+    private int mappedCount = 0;
+
+    // the lines that were added since the file was loaded
+    private final List<byte[]> added = new ArrayList<byte[]>();
+
+    // the lines before this one are no longer part of the history (but are still in the file, until it is compacted)
+    private int first = 0;
+
+    // true if the last line of the file does not end with a new line
+    private boolean unfinishedLine = false;
+
+    // the search index. The first bytes of line i (big-endian, padded with 0) are prefixes[i], and its length is lengths[i]. The lines
+    // before indexedCount are indexed.
+    private long[] prefixes = new long[0];
+    private int[] lengths = new int[0];
+    private int indexedCount = 0;
+
+    // after the file could not be compacted, it is only tried again once this many more lines were added (or when it is loaded again)
+    private int compactRetry = 0;
+
+    /**
+     * @param maxSize the most lines that are kept
+     * @param fileName the history file, or empty if the history is not saved
+     */
+    History(final int maxSize, final String fileName) {
+        this.maxSize = Math.max(1, maxSize);
+        this.file = fileName == null || fileName.isEmpty() ? null : new File(fileName);
+
+        if (file != null && file.isFile()) {
+            try {
+                load();
+                compactIfNecessary();
+            } catch (IOException e) {
+                logger.error("Unable to load the history file {}", file, e);
+            }
+        }
+    }
+
+    private
+    void load() throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("The history file is too large: " + size + " bytes");
+            }
+
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } finally {
+            channel.close();
+        }
+
+        final MappedByteBuffer mapped = this.mapped;
+        final int limit = mapped.limit();
+        final int maxLines = (int) Math.min(Integer.MAX_VALUE - 1, 2L * maxSize);
+
+        // the last line might not end with a new line (ie: the file was edited)
+        unfinishedLine = limit > 0 && mapped.get(limit - 1) != '\n';
+
+        // the start of every line, from the last line to the first. The new line at the end of the file ends the last line, so the
+        // search starts before it.
+        int[] starts = new int[1024];
+        int count = 0;
+        int position = unfinishedLine ? limit : limit - 1;
+
+        // the mapped bytes are copied in chunks, since searching an array is much faster than a get() for every byte
+        final ByteBuffer source = mapped.duplicate();
+        final byte[] chunk = new byte[Math.max(1, Math.min(position, 65536))];
+
+        search:
+        while (position > 0) {
+            final int length = Math.min(chunk.length, position);
+            final int chunkStart = position - length;
+            source.position(chunkStart);
+            source.get(chunk, 0, length);
+
+            for (int i = length - 1; i >= 0; i--) {
+                if (chunk[i] == '\n') {
+                    if (count == maxLines) {
+                        // the lines before these are never part of the history
+                        break search;
+                    }
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, starts.length << 1);
+                    }
+                    starts[count++] = chunkStart + i + 1;
+                }
+            }
+
+            position = chunkStart;
+        }
+
+        if (limit > 0 && count < maxLines) {
+            // the first line of the file
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, starts.length << 1);
+            }
+            starts[count++] = 0;
+        }
+
+        final int[] offsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = starts[count - 1 - i];
+        }
+        offsets[count] = unfinishedLine ? limit + 1 : limit;
+
+        this.offsets = offsets;
+        this.mappedCount = count;
+        this.added.clear();
+        this.first = Math.max(0, count - maxSize);
+        this.indexedCount = 0;
+    }
+
+    /**
+     * Forgets the lines of the file, and unmaps it right away (instead of when it is garbage collected), since a file cannot be replaced
+     * while it is mapped on windows.
+     * <p>
+     * There is no public API to unmap a file, so (like sun.misc.Signal in PosixTerminal) this is done via reflection, and it is skipped
+     * when that is not possible.
+     */
+    private
+    void unload() {
+        final MappedByteBuffer mapped = this.mapped;
+
+        // nothing can use the mapped lines after they are unmapped
+        this.mapped = null;
+        this.offsets = new int[] {0};
+        this.mappedCount = 0;
+        this.added.clear();
+        this.first = 0;
+        this.indexedCount = 0;
+
+        if (mapped == null) {
+            return;
+        }
+
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Method invokeCleaner;
+            try {
+                // java 9+
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                // java 8
+                final Method cleanerMethod = mapped.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+
+                final Object cleaner = cleanerMethod.invoke(mapped);
+                if (cleaner != null) {
+                    final Method cleanMethod = cleaner.getClass().getMethod("clean");
+                    cleanMethod.setAccessible(true);
+                    cleanMethod.invoke(cleaner);
+                }
+                return;
+            }
+
+            final Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+            invokeCleaner.invoke(unsafeField.get(null), mapped);
+        } catch (Exception e) {
+            logger.debug("Unable to unmap the history file {}", file, e);
+        }
+    }
+
+    /**
+     * @return the number of lines in the history
+     */
+    int size() {
+        return mappedCount + added.size() - first;
+    }
+
+    /**
+     * @return the line at the index (0 is the oldest line)
+     */
+    String get(final int index) {
+        final int line = first + index;
+
+        if (line >= mappedCount) {
+            return new String(added.get(line - mappedCount), UTF_8);
+        }
+
+        final int length = mappedLength(line);
+        final byte[] bytes = new byte[length];
+        copyMapped(line, bytes, length);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * @return the number of bytes of the mapped line, without the line ending (a new line, or a windows line ending if the file was
+     *         edited)
+     */
+    private
+    int mappedLength(final int line) {
+        final int start = offsets[line];
+        int length = offsets[line + 1] - 1 - start;
+
+        if (length > 0 && mapped.get(start + length - 1) == '\r') {
+            length--;
+        }
+        return length;
+    }
+
+    /**
+     * Copies the first bytes of the mapped line (with a single bulk get)
+     */
+    private
+    void copyMapped(final int line, final byte[] bytes, final int length) {
+        final ByteBuffer source = mapped.duplicate();
+        source.position(offsets[line]);
+        source.get(bytes, 0, length);
+    }
+
+    /**
+     * Searches for the most recent line (at or before the index) that starts with the prefix
+     *
+     * @return the index of the line, or -1 if no line (at or before the index) starts with the prefix
+     */
+    int search(final String prefix, final int fromIndex) {
+        final byte[] bytes = prefix.getBytes(UTF_8);
+        final int keyLength = Math.min(bytes.length, PREFIX_LENGTH);
+        final long mask = keyLength == 0 ? 0L : -1L << (8 * (PREFIX_LENGTH - keyLength));
+        final long key = prefixOf(bytes, keyLength);
+
+        index();
+
+        final long[] prefixes = this.prefixes;
+        final int[] lengths = this.lengths;
+
+        for (int index = Math.min(fromIndex, size() - 1); index >= 0; index--) {
+            final int line = first + index;
+
+            if (lengths[line] >= bytes.length && (prefixes[line] & mask) == key &&
+                (bytes.length <= PREFIX_LENGTH || startsWith(line, bytes))) {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Adds the lines that are not in the search index yet
+     */
+    private
+    void index() {
+        final int count = mappedCount + added.size();
+        if (indexedCount >= count) {
+            return;
+        }
+
+        if (prefixes.length < count) {
+            final int length = Math.max(count, prefixes.length + (prefixes.length >> 1));
+            prefixes = Arrays.copyOf(prefixes, length);
+            lengths = Arrays.copyOf(lengths, length);
+        }
+
+        final byte[] bytes = new byte[PREFIX_LENGTH];
+
+        // the lines before the first line are never searched
+        for (int line = Math.max(indexedCount, first); line < count; line++) {
+            if (line >= mappedCount) {
+                final byte[] addedLine = added.get(line - mappedCount);
+                lengths[line] = addedLine.length;
+                prefixes[line] = prefixOf(addedLine, Math.min(addedLine.length, PREFIX_LENGTH));
+            }
+            else {
+                final int length = mappedLength(line);
+                final int keyLength = Math.min(length, PREFIX_LENGTH);
+                copyMapped(line, bytes, keyLength);
+
+                lengths[line] = length;
+                prefixes[line] = prefixOf(bytes, keyLength);
+            }
+        }
+
+        indexedCount = count;
+    }
+
+    /**
+     * @return the first bytes, as a big-endian long that is padded with 0
+     */
+    private static
+    long prefixOf(final byte[] bytes, final int length) {
+        long prefix = 0L;
+        for (int i = 0; i < PREFIX_LENGTH; i++) {
+            prefix = prefix << 8 | (i < length ? bytes[i] & 0xFF : 0);
+        }
+        return prefix;
+    }
+
+    /**
+     * Compares the bytes after the indexed prefix. The line must be at least as long as the prefix.
+     */
+    private
+    boolean startsWith(final int line, final byte[] prefix) {
+        final byte[] bytes;
+        if (line >= mappedCount) {
+            bytes = added.get(line - mappedCount);
+        }
+        else {
+            bytes = new byte[prefix.length];
+            copyMapped(line, bytes, prefix.length);
+        }
+
+        for (int i = PREFIX_LENGTH; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a line to the history (and the history file), unless it is empty or the same as the most recent line.
+     */
+    void add(final String line) {
+        if (line.isEmpty() || line.indexOf('\n') >= 0 || (size() > 0 && get(size() - 1).equals(line))) {
+            return;
+        }
+
+        final byte[] bytes = line.getBytes(UTF_8);
+        added.add(bytes);
+
+        if (size() > maxSize) {
+            first++;
+        }
+
+        if (file == null) {
+            if (first >= maxSize) {
+                // nothing is kept in a file, so there are never any mapped lines
+                added.subList(0, first).clear();
+                first = 0;
+                indexedCount = 0;
+            }
+            return;
+        }
+
+        try {
+            OutputStream out = Files.newOutputStream(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            try {
+                if (unfinishedLine) {
+                    out.write('\n');
+                    unfinishedLine = false;
+                }
+
+                byte[] entry = Arrays.copyOf(bytes, bytes.length + 1);
+                entry[bytes.length] = '\n';
+                out.write(entry);
+            } finally {
+                out.close();
+            }
+
+            if (compactRetry > 0) {
+                compactRetry--;
+            }
+            compactIfNecessary();
+        } catch (IOException e) {
+            logger.error("Unable to write to the history file {}", file, e);
+        }
+    }
+
+    /**
+     * Rewrites the history file with only the lines of the history, once the file has twice as many lines as the history.
+     */
+    private
+    void compactIfNecessary() throws IOException {
+        if (first < maxSize || compactRetry > 0) {
+            return;
+        }
+
+        File compacted = new File(file.getPath() + ".tmp");
+
+        try {
+            writeLines(compacted);
+        } catch (IOException e) {
+            compactFailed(compacted, e);
+            return;
+        }
+
+        // every line is in the file, so the lines are loaded again afterwards (from the compacted file, or the file as it was)
+        unload();
+
+        try {
+            Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            compactFailed(compacted, e);
+        }
+
+        load();
+    }
+
+    /**
+     * Writes the lines of the history to the file, one line each
+     */
+    private
+    void writeLines(final File file) throws IOException {
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(file.toPath()), 65536);
+        try {
+            byte[] bytes = new byte[256];
+
+            final int size = size();
+            for (int index = 0; index < size; index++) {
+                final int line = first + index;
+
+                if (line >= mappedCount) {
+                    out.write(added.get(line - mappedCount));
+                }
+                else {
+                    final int length = mappedLength(line);
+                    if (length > bytes.length) {
+                        bytes = new byte[Math.max(length, bytes.length << 1)];
+                    }
+
+                    copyMapped(line, bytes, length);
+                    out.write(bytes, 0, length);
+                }
+                out.write('\n');
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private
+    void compactFailed(final File compacted, final IOException e) {
+        // the lines are still correct, the file is only larger
+        logger.debug("Unable to compact the history file {}", file, e);
+
+        compacted.delete();
+        compactRetry = maxSize;
+    }
+}
@@ -64,8 +64,7 @@ class Input {
         } else if (debugEnabled && term instanceof UnsupportedTerminal) {
             logger.debug("Terminal is UNSUPPORTED (best guess). Unable to support single key input. Only line input available.");
         } else if (debugEnabled) {
-            logger.debug("Created Terminal: {} ({}w x {}h)", Input.terminal.getClass().getSimpleName(),
-                         Input.terminal.getWidth(), Input.terminal.getHeight());
+            logger.debug("Created Terminal: {} ({})", Input.terminal.getClass().getSimpleName(), Input.terminal.getSize());
         }
 
 
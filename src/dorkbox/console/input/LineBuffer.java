@@ -0,0 +1,332 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.input;
+
+import java.util.Arrays;
+
+/**
+ * The characters of a line that is being typed, stored in a gap buffer: the gap is always at the cursor, so inserting or deleting at the
+ * cursor only changes the edges of the gap, and moving the cursor only moves the characters that it moves over.
+ * <p>
+ * The column (the number of characters echoed to the screen) of the cursor and of the end of the line are kept up to date as the line
+ * is edited, so nothing ever has to rescan the line.
+ * <p>
+ * This is not thread safe, access must be synchronized externally.
+ */
+final
+class LineBuffer {
+    private char[] chars = new char[64];
+
+    // the characters before the cursor are [0, gapStart), and the characters after the cursor are [gapEnd, chars.length)
+    private int gapStart = 0;
+    private int gapEnd = chars.length;
+
+    private int cursorColumn = 0;
+    private int endColumn = 0;
+
+    /**
+     * Inserts a character (code point) at the cursor, and moves the cursor after it
+     */
+    void insert(final int codePoint) {
+        if (gapEnd - gapStart < 2) {
+            grow();
+        }
+
+        if (Character.isBmpCodePoint(codePoint)) {
+            chars[gapStart++] = (char) codePoint;
+        }
+        else {
+            chars[gapStart++] = Character.highSurrogate(codePoint);
+            chars[gapStart++] = Character.lowSurrogate(codePoint);
+        }
+
+        int width = SupportedTerminal.getPrintableCharacters(codePoint);
+        cursorColumn += width;
+        endColumn += width;
+    }
+
+    private
+    void grow() {
+        int tailLength = chars.length - gapEnd;
+        char[] newChars = Arrays.copyOf(chars, chars.length << 1);
+        int newGapEnd = newChars.length - tailLength;
+
+        System.arraycopy(chars, gapEnd, newChars, newGapEnd, tailLength);
+
+        // safer for passwords, etc
+        Arrays.fill(chars, '\0');
+
+        chars = newChars;
+        gapEnd = newGapEnd;
+    }
+
+    /**
+     * Deletes the character (both halves of a surrogate pair) before the cursor, if there is one.
+     *
+     * @return false if the cursor is at the start of the line
+     */
+    boolean deleteBefore() {
+        if (gapStart == 0) {
+            return false;
+        }
+
+        int codePoint = Character.codePointBefore(chars, gapStart, 0);
+        int length = Character.charCount(codePoint);
+
+        gapStart -= length;
+        Arrays.fill(chars, gapStart, gapStart + length, '\0');
+
+        int width = SupportedTerminal.getPrintableCharacters(codePoint);
+        cursorColumn -= width;
+        endColumn -= width;
+        return true;
+    }
+
+    /**
+     * Deletes the character (both halves of a surrogate pair) after the cursor, if there is one.
+     *
+     * @return false if the cursor is at the end of the line
+     */
+    boolean deleteAfter() {
+        if (gapEnd == chars.length) {
+            return false;
+        }
+
+        int codePoint = Character.codePointAt(chars, gapEnd, chars.length);
+        int length = Character.charCount(codePoint);
+
+        Arrays.fill(chars, gapEnd, gapEnd + length, '\0');
+        gapEnd += length;
+
+        endColumn -= SupportedTerminal.getPrintableCharacters(codePoint);
+        return true;
+    }
+
+    /**
+     * Deletes everything before the cursor
+     */
+    void deleteToStart() {
+        Arrays.fill(chars, 0, gapStart, '\0');
+        gapStart = 0;
+
+        endColumn -= cursorColumn;
+        cursorColumn = 0;
+    }
+
+    /**
+     * Deletes everything after the cursor
+     */
+    void deleteToEnd() {
+        Arrays.fill(chars, gapEnd, chars.length, '\0');
+        gapEnd = chars.length;
+
+        endColumn = cursorColumn;
+    }
+
+    /**
+     * Deletes the word before the cursor (and the whitespace between it and the cursor)
+     */
+    void deleteWordBefore() {
+        while (gapStart > 0 && Character.isWhitespace(Character.codePointBefore(chars, gapStart, 0))) {
+            deleteBefore();
+        }
+        while (gapStart > 0 && !Character.isWhitespace(Character.codePointBefore(chars, gapStart, 0))) {
+            deleteBefore();
+        }
+    }
+
+    /**
+     * Moves the cursor one character to the left
+     *
+     * @return false if the cursor is at the start of the line
+     */
+    boolean moveLeft() {
+        if (gapStart == 0) {
+            return false;
+        }
+
+        int codePoint = Character.codePointBefore(chars, gapStart, 0);
+        int length = Character.charCount(codePoint);
+
+        gapStart -= length;
+        gapEnd -= length;
+        System.arraycopy(chars, gapStart, chars, gapEnd, length);
+        Arrays.fill(chars, gapStart, gapStart + length, '\0');
+
+        cursorColumn -= SupportedTerminal.getPrintableCharacters(codePoint);
+        return true;
+    }
+
+    /**
+     * Moves the cursor one character to the right
+     *
+     * @return false if the cursor is at the end of the line
+     */
+    boolean moveRight() {
+        if (gapEnd == chars.length) {
+            return false;
+        }
+
+        int codePoint = Character.codePointAt(chars, gapEnd, chars.length);
+        int length = Character.charCount(codePoint);
+
+        System.arraycopy(chars, gapEnd, chars, gapStart, length);
+        Arrays.fill(chars, gapEnd, gapEnd + length, '\0');
+        gapStart += length;
+        gapEnd += length;
+
+        cursorColumn += SupportedTerminal.getPrintableCharacters(codePoint);
+        return true;
+    }
+
+    /**
+     * Moves the cursor to the start of the previous word
+     */
+    void moveWordLeft() {
+        while (gapStart > 0 && Character.isWhitespace(Character.codePointBefore(chars, gapStart, 0))) {
+            moveLeft();
+        }
+        while (gapStart > 0 && !Character.isWhitespace(Character.codePointBefore(chars, gapStart, 0))) {
+            moveLeft();
+        }
+    }
+
+    /**
+     * Moves the cursor to the end of the next word
+     */
+    void moveWordRight() {
+        while (gapEnd < chars.length && Character.isWhitespace(Character.codePointAt(chars, gapEnd, chars.length))) {
+            moveRight();
+        }
+        while (gapEnd < chars.length && !Character.isWhitespace(Character.codePointAt(chars, gapEnd, chars.length))) {
+            moveRight();
+        }
+    }
+
+    /**
+     * Moves the cursor to the start of the line
+     */
+    void moveToStart() {
+        int length = gapStart;
+
+        gapEnd -= length;
+        System.arraycopy(chars, 0, chars, gapEnd, length);
+        Arrays.fill(chars, 0, gapEnd, '\0');
+
+        gapStart = 0;
+        cursorColumn = 0;
+    }
+
+    /**
+     * Moves the cursor to the end of the line
+     */
+    void moveToEnd() {
+        int length = chars.length - gapEnd;
+
+        System.arraycopy(chars, gapEnd, chars, gapStart, length);
+        gapStart += length;
+        Arrays.fill(chars, gapStart, chars.length, '\0');
+
+        gapEnd = chars.length;
+        cursorColumn = endColumn;
+    }
+
+    /**
+     * @return the column (starting at 0) of the cursor
+     */
+    int cursorColumn() {
+        return cursorColumn;
+    }
+
+    /**
+     * @return the column (starting at 0) after the last character of the line
+     */
+    int endColumn() {
+        return endColumn;
+    }
+
+    /**
+     * @return the number of characters before the cursor
+     */
+    int cursor() {
+        return gapStart;
+    }
+
+    /**
+     * @return the number of characters in the line
+     */
+    int length() {
+        return gapStart + chars.length - gapEnd;
+    }
+
+    /**
+     * @return the character at the index (of the entire line, ignoring the gap)
+     */
+    char charAt(final int index) {
+        if (index < gapStart) {
+            return chars[index];
+        }
+        return chars[index + gapEnd - gapStart];
+    }
+
+    /**
+     * Replaces the line, and moves the cursor to the end of it
+     */
+    void replace(final CharSequence line) {
+        clearSecure();
+
+        for (int i = 0; i < line.length(); ) {
+            int codePoint = Character.codePointAt(line, i);
+            i += Character.charCount(codePoint);
+            insert(codePoint);
+        }
+    }
+
+    @Override
+    public
+    String toString() {
+        return new String(chars, 0, gapStart) + new String(chars, gapEnd, chars.length - gapEnd);
+    }
+
+    /**
+     * @return the characters of the line. The line is cleared afterwards (overwriting the characters).
+     */
+    char[] takeChars() {
+        int length = length();
+        if (length == 0) {
+            return Terminal.EMPTY_LINE;
+        }
+
+        char[] line = new char[length];
+        System.arraycopy(chars, 0, line, 0, gapStart);
+        System.arraycopy(chars, gapEnd, line, gapStart, chars.length - gapEnd);
+
+        clearSecure();
+        return line;
+    }
+
+    /**
+     * Clears the line, and overwrites the characters (safer for passwords, etc)
+     */
+    void clearSecure() {
+        Arrays.fill(chars, '\0');
+        gapStart = 0;
+        gapEnd = chars.length;
+
+        cursorColumn = 0;
+        endColumn = 0;
+    }
+}
@@ -0,0 +1,973 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.input;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import dorkbox.console.Console;
+
+/**
+ * Edits the lines that are being typed, and echoes them to the screen (instead of the terminal echoing the input).
+ * <p>
+ * The escape sequences of the arrow keys, Home/End and Delete are decoded, as are the usual control keys: Ctrl-A/E (start/end of line),
+ * Ctrl-B/F (left/right), Ctrl-D (delete), Ctrl-K/U (delete to end/start of line), Ctrl-W (delete word), and Alt-B/F or Ctrl-Left/Right
+ * (previous/next word).
+ * <p>
+ * The up/down arrows (and Ctrl-P/N) show the previous/next line of the history, and Ctrl-R searches the history for the most recent line
+ * that starts with what is typed.
+ * <p>
+ * Tab completes the word before the cursor with the completer of the terminal (if there is one). When there is more than one candidate,
+ * the text that all of them start with is completed, and a second Tab lists the candidates below the line, in as many columns as fit in
+ * the width of the terminal.
+ * <p>
+ * After every edit, only the part of the line that changed (from the cursor to the end of the line) is written again, with relative
+ * cursor movements. Every update is a single write. Lines that are wider than the terminal (and wrap) are not supported.
+ * <p>
+ * This is not thread safe, access must be synchronized externally.
+ */
+final
+class LineEditor {
+    private static final int ESC = 27;
+
+    // the escape sequence decoder states
+    private static final int NORMAL = 0;
+    private static final int ESCAPE = 1; // after ESC
+    private static final int CSI = 2;    // after ESC [
+    private static final int SS3 = 3;    // after ESC O
+
+    // escape sequences (of keys that we do not know) longer than this are ignored
+    private static final int MAX_SEQUENCE_LENGTH = 16;
+
+    // the modifier parameter of CSI 1;<modifier> C/D
+    private static final int MODIFIER_ALT = 3;
+    private static final int MODIFIER_CTRL = 5;
+
+    private final Terminal terminal;
+    private final PrintStream out;
+
+    // null if there is no history
+    private final History history;
+
+    // the line of the history that is shown, or the size of the history when the line being typed is shown
+    private int historyIndex;
+
+    // the line being typed, while a line of the history is shown instead
+    private String typedLine;
+
+    // the state of the Ctrl-R search of the history
+    private boolean searching = false;
+    private final StringBuilder searchPrefix = new StringBuilder();
+    private int searchIndex;
+    private int searchColumn;
+
+    // true when the previous key was a Tab that did not complete anything, so the next Tab lists the candidates
+    private boolean listOnTab = false;
+
+    // true when the candidates are listed below the line
+    private boolean listShown = false;
+
+    private int state = NORMAL;
+    private int sequenceLength;
+    private final int[] parameters = new int[2];
+    private int parameterCount;
+
+    // every update of the screen is collected here, and written at once
+    private byte[] output = new byte[256];
+    private int outputLength = 0;
+
+    /**
+     * @param history null if there is no history
+     */
+    LineEditor(final Terminal terminal, final PrintStream out, final History history) {
+        this.terminal = terminal;
+        this.out = out;
+        this.history = history;
+        this.historyIndex = history == null ? 0 : history.size();
+    }
+
+    /**
+     * Edits the lines (all of them get the same input) with the typed character, which is part of a key or an escape sequence.
+     */
+    void process(final int typedChar, final List<LineBuffer> buffers) {
+        if (listShown) {
+            clearList(reference(buffers));
+        }
+        if (typedChar != '\t') {
+            listOnTab = false;
+        }
+
+        if (searching && state == NORMAL) {
+            processSearch(typedChar, buffers);
+            return;
+        }
+
+        switch (state) {
+            case ESCAPE:
+                state = NORMAL;
+
+                if (typedChar == '[') {
+                    startSequence(CSI);
+                }
+                else if (typedChar == 'O') {
+                    startSequence(SS3);
+                }
+                else if (typedChar == 'b' || typedChar == 'B') {
+                    moveWordLeft(buffers);
+                }
+                else if (typedChar == 'f' || typedChar == 'F') {
+                    moveWordRight(buffers);
+                }
+                else {
+                    // alt + key, which is the same as the key
+                    process(typedChar, buffers);
+                }
+                return;
+
+            case CSI:
+            case SS3:
+                processSequence(typedChar, buffers);
+                return;
+        }
+
+        switch (typedChar) {
+            case ESC:
+                state = ESCAPE;
+                break;
+            case 1: // Ctrl-A
+                moveToStart(buffers);
+                break;
+            case 2: // Ctrl-B
+                moveLeft(buffers);
+                break;
+            case 4: // Ctrl-D
+                deleteAfter(buffers);
+                break;
+            case 5: // Ctrl-E
+                moveToEnd(buffers);
+                break;
+            case 6: // Ctrl-F
+                moveRight(buffers);
+                break;
+            case 14: // Ctrl-N
+                historyNext(buffers);
+                break;
+            case 16: // Ctrl-P
+                historyPrevious(buffers);
+                break;
+            case 18: // Ctrl-R
+                startSearch(buffers);
+                break;
+            case '\t':
+                final Completer completer = terminal.getCompleter();
+                if (completer != null && Console.ENABLE_ECHO) {
+                    complete(completer, buffers);
+                }
+                else {
+                    edit(buffers, EDIT_INSERT, typedChar);
+                }
+                break;
+            case 11: // Ctrl-K
+                edit(buffers, EDIT_DELETE_TO_END, 0);
+                break;
+            case 21: // Ctrl-U
+                edit(buffers, EDIT_DELETE_TO_START, 0);
+                break;
+            case 23: // Ctrl-W
+                edit(buffers, EDIT_DELETE_WORD, 0);
+                break;
+            case '\b':
+            case 127:
+                if (Console.ENABLE_BACKSPACE) {
+                    edit(buffers, EDIT_DELETE_BEFORE, 0);
+                }
+                else {
+                    edit(buffers, EDIT_INSERT, typedChar);
+                }
+                break;
+            default:
+                edit(buffers, EDIT_INSERT, typedChar);
+        }
+    }
+
+    private
+    void startSequence(final int newState) {
+        state = newState;
+        sequenceLength = 0;
+        parameterCount = 0;
+        parameters[0] = 0;
+        parameters[1] = 0;
+    }
+
+    private
+    void processSequence(final int typedChar, final List<LineBuffer> buffers) {
+        if (typedChar >= '0' && typedChar <= '9') {
+            if (parameterCount == 0) {
+                parameterCount = 1;
+            }
+            if (parameterCount <= parameters.length) {
+                int index = parameterCount - 1;
+                parameters[index] = Math.min(parameters[index] * 10 + typedChar - '0', 1000);
+            }
+        }
+        else if (typedChar == ';') {
+            parameterCount = Math.max(parameterCount, 1) + 1;
+            if (parameterCount <= parameters.length) {
+                parameters[parameterCount - 1] = 0;
+            }
+        }
+        else if (typedChar >= 0x40 && typedChar <= 0x7E) {
+            // the final character of the sequence
+            state = NORMAL;
+            processKey(typedChar, buffers);
+            return;
+        }
+
+        if (++sequenceLength > MAX_SEQUENCE_LENGTH) {
+            state = NORMAL;
+        }
+    }
+
+    private
+    void processKey(final int finalChar, final List<LineBuffer> buffers) {
+        final int modifier = parameterCount > 1 ? parameters[1] : 0;
+        final boolean word = modifier == MODIFIER_CTRL || modifier == MODIFIER_ALT;
+
+        switch (finalChar) {
+            case 'A':
+                historyPrevious(buffers);
+                break;
+            case 'B':
+                historyNext(buffers);
+                break;
+            case 'C':
+                if (word) {
+                    moveWordRight(buffers);
+                }
+                else {
+                    moveRight(buffers);
+                }
+                break;
+            case 'D':
+                if (word) {
+                    moveWordLeft(buffers);
+                }
+                else {
+                    moveLeft(buffers);
+                }
+                break;
+            case 'H':
+                moveToStart(buffers);
+                break;
+            case 'F':
+                moveToEnd(buffers);
+                break;
+            case '~':
+                switch (parameters[0]) {
+                    case 1:
+                    case 7:
+                        moveToStart(buffers);
+                        break;
+                    case 3:
+                        deleteAfter(buffers);
+                        break;
+                    case 4:
+                    case 8:
+                        moveToEnd(buffers);
+                        break;
+                }
+                break;
+
+            // every other key is ignored
+        }
+    }
+
+    private
+    void moveLeft(final List<LineBuffer> buffers) {
+        final int oldColumn = reference(buffers).cursorColumn();
+        for (int i = 0; i < buffers.size(); i++) {
+            buffers.get(i).moveLeft();
+        }
+        moveCursor(oldColumn, reference(buffers).cursorColumn());
+    }
+
+    private
+    void moveRight(final List<LineBuffer> buffers) {
+        final int oldColumn = reference(buffers).cursorColumn();
+        for (int i = 0; i < buffers.size(); i++) {
+            buffers.get(i).moveRight();
+        }
+        moveCursor(oldColumn, reference(buffers).cursorColumn());
+    }
+
+    private
+    void moveWordLeft(final List<LineBuffer> buffers) {
+        final int oldColumn = reference(buffers).cursorColumn();
+        for (int i = 0; i < buffers.size(); i++) {
+            buffers.get(i).moveWordLeft();
+        }
+        moveCursor(oldColumn, reference(buffers).cursorColumn());
+    }
+
+    private
+    void moveWordRight(final List<LineBuffer> buffers) {
+        final int oldColumn = reference(buffers).cursorColumn();
+        for (int i = 0; i < buffers.size(); i++) {
+            buffers.get(i).moveWordRight();
+        }
+        moveCursor(oldColumn, reference(buffers).cursorColumn());
+    }
+
+    private
+    void moveToStart(final List<LineBuffer> buffers) {
+        final int oldColumn = reference(buffers).cursorColumn();
+        for (int i = 0; i < buffers.size(); i++) {
+            buffers.get(i).moveToStart();
+        }
+        moveCursor(oldColumn, 0);
+    }
+
+    private
+    void moveToEnd(final List<LineBuffer> buffers) {
+        final int oldColumn = reference(buffers).cursorColumn();
+        for (int i = 0; i < buffers.size(); i++) {
+            buffers.get(i).moveToEnd();
+        }
+        moveCursor(oldColumn, reference(buffers).cursorColumn());
+    }
+
+    private
+    void deleteAfter(final List<LineBuffer> buffers) {
+        edit(buffers, EDIT_DELETE_AFTER, 0);
+    }
+
+    private static final int EDIT_INSERT = 0;
+    private static final int EDIT_DELETE_BEFORE = 1;
+    private static final int EDIT_DELETE_AFTER = 2;
+    private static final int EDIT_DELETE_TO_START = 3;
+    private static final int EDIT_DELETE_TO_END = 4;
+    private static final int EDIT_DELETE_WORD = 5;
+
+    /**
+     * Changes the text of the lines at the cursor, and then writes the changed part of the line again.
+     */
+    private
+    void edit(final List<LineBuffer> buffers, final int edit, final int codePoint) {
+        final LineBuffer reference = reference(buffers);
+        final int oldCursor = reference.cursor();
+        final int oldLength = reference.length();
+        final int oldCursorColumn = reference.cursorColumn();
+        final int oldEndColumn = reference.endColumn();
+
+        for (int i = 0; i < buffers.size(); i++) {
+            LineBuffer buffer = buffers.get(i);
+            switch (edit) {
+                case EDIT_INSERT:
+                    buffer.insert(codePoint);
+                    break;
+                case EDIT_DELETE_BEFORE:
+                    buffer.deleteBefore();
+                    break;
+                case EDIT_DELETE_AFTER:
+                    buffer.deleteAfter();
+                    break;
+                case EDIT_DELETE_TO_START:
+                    buffer.deleteToStart();
+                    break;
+                case EDIT_DELETE_TO_END:
+                    buffer.deleteToEnd();
+                    break;
+                case EDIT_DELETE_WORD:
+                    buffer.deleteWordBefore();
+                    break;
+            }
+        }
+
+        final int cursor = reference.cursor();
+        final int length = reference.length();
+
+        if (!Console.ENABLE_ECHO || (cursor == oldCursor && length == oldLength)) {
+            // nothing was changed (ie: backspace at the start of the line)
+            return;
+        }
+
+        // everything from here (to the end of the line) has changed
+        redraw(reference, Math.min(oldCursor, cursor), Math.min(oldCursorColumn, reference.cursorColumn()), oldCursorColumn, oldEndColumn);
+    }
+
+    /**
+     * Writes the line again, from the character (and its column) to the end of the line, and then moves the cursor back to where it is
+     * in the line.
+     *
+     * @param oldCursorColumn the column that the cursor is at on the screen
+     * @param oldEndColumn the column of the end of what is on the screen
+     */
+    private
+    void redraw(final LineBuffer reference, final int from, final int fromColumn, final int oldCursorColumn, final int oldEndColumn) {
+        final int length = reference.length();
+        final int cursorColumn = reference.cursorColumn();
+        final int endColumn = reference.endColumn();
+
+        appendMove(oldCursorColumn, fromColumn);
+
+        for (int i = from; i < length; i++) {
+            char c = reference.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < length) {
+                appendCodePoint(Character.toCodePoint(c, reference.charAt(++i)));
+            }
+            else {
+                appendCodePoint(c);
+            }
+        }
+
+        if (endColumn < oldEndColumn) {
+            // erase what is left of the old line
+            appendSequence('K');
+        }
+
+        appendMove(endColumn, cursorColumn);
+        flush();
+    }
+
+    /**
+     * Moves the cursor to the end of the line, and starts a new line.
+     */
+    void endLine(final List<LineBuffer> buffers) {
+        state = NORMAL;
+
+        if (searching) {
+            endSearch(buffers, true);
+        }
+
+        if (history != null) {
+            // lines that are not echoed (ie: passwords) are never added to the history
+            if (!buffers.isEmpty() && Console.ENABLE_ECHO) {
+                history.add(reference(buffers).toString());
+            }
+
+            historyIndex = history.size();
+            typedLine = null;
+        }
+
+        if (!Console.ENABLE_ECHO) {
+            return;
+        }
+
+        if (!buffers.isEmpty()) {
+            LineBuffer reference = reference(buffers);
+            appendMove(reference.cursorColumn(), reference.endColumn());
+        }
+
+        if (listShown) {
+            listShown = false;
+            appendSequence('J');
+        }
+
+        appendByte('\n');
+        flush();
+    }
+
+    /**
+     * Shows the previous (older) line of the history
+     */
+    private
+    void historyPrevious(final List<LineBuffer> buffers) {
+        if (history == null || historyIndex == 0) {
+            return;
+        }
+
+        if (historyIndex >= history.size()) {
+            typedLine = reference(buffers).toString();
+            historyIndex = history.size();
+        }
+
+        historyIndex--;
+        replaceLine(buffers, history.get(historyIndex));
+    }
+
+    /**
+     * Shows the next (more recent) line of the history, or the line being typed after the most recent line
+     */
+    private
+    void historyNext(final List<LineBuffer> buffers) {
+        if (history == null || historyIndex >= history.size()) {
+            return;
+        }
+
+        historyIndex++;
+        if (historyIndex == history.size()) {
+            replaceLine(buffers, typedLine == null ? "" : typedLine);
+            typedLine = null;
+        }
+        else {
+            replaceLine(buffers, history.get(historyIndex));
+        }
+    }
+
+    /**
+     * Replaces the lines, and writes the entire line again. The cursor is at the end of the line afterwards.
+     */
+    private
+    void replaceLine(final List<LineBuffer> buffers, final String line) {
+        final LineBuffer reference = reference(buffers);
+        final int oldCursorColumn = reference.cursorColumn();
+        final int oldEndColumn = reference.endColumn();
+
+        for (int i = 0; i < buffers.size(); i++) {
+            buffers.get(i).replace(line);
+        }
+
+        if (Console.ENABLE_ECHO) {
+            redraw(reference, 0, 0, oldCursorColumn, oldEndColumn);
+        }
+    }
+
+    /**
+     * Completes the word before the cursor. A single candidate replaces the word (followed by a space). Otherwise, the word is completed
+     * with the text that all the candidates start with, or (when that is not longer than the word) the candidates are listed on the
+     * second Tab.
+     */
+    private
+    void complete(final Completer completer, final List<LineBuffer> buffers) {
+        final LineBuffer reference = reference(buffers);
+        final String line = reference.toString();
+        final int cursor = reference.cursor();
+
+        // only as many candidates are kept as could fit on the screen (in columns that are only a single character wide)
+        final TerminalSize size = terminal.getSize();
+        final Candidates candidates = new Candidates(maxListLines(size) * ((Math.max(1, size.getWidth()) + 2) / 3));
+        int start;
+        try {
+            start = completer.complete(line, cursor, candidates);
+        } catch (Exception e) {
+            terminal.logger.error("Error completing the line", e);
+            start = -1;
+        }
+
+        if (start < 0 || start > cursor || candidates.isEmpty()) {
+            bell();
+            return;
+        }
+
+        if (candidates.size() == 1 && !candidates.getListed().isEmpty()) {
+            replaceWord(buffers, start, candidates.getListed().get(0) + " ");
+        }
+        else {
+            final CharSequence prefix = candidates.getCommonPrefix();
+            if (prefix.length() > cursor - start) {
+                replaceWord(buffers, start, prefix);
+            }
+            else if (listOnTab) {
+                listCandidates(candidates, size);
+            }
+            else {
+                listOnTab = true;
+                bell();
+            }
+        }
+    }
+
+    /**
+     * @return the most lines that the list of candidates can use, so that the line stays on the screen
+     */
+    private static
+    int maxListLines(final TerminalSize size) {
+        return Math.max(2, size.getHeight() - 1);
+    }
+
+    /**
+     * Replaces the text from the start to the cursor, and writes the changed part of the line again.
+     */
+    private
+    void replaceWord(final List<LineBuffer> buffers, final int start, final CharSequence text) {
+        final LineBuffer reference = reference(buffers);
+        final int oldCursorColumn = reference.cursorColumn();
+        final int oldEndColumn = reference.endColumn();
+
+        for (int i = 0; i < buffers.size(); i++) {
+            LineBuffer buffer = buffers.get(i);
+            while (buffer.cursor() > start) {
+                buffer.deleteBefore();
+            }
+        }
+
+        final int startColumn = reference.cursorColumn();
+
+        for (int i = 0; i < buffers.size(); i++) {
+            LineBuffer buffer = buffers.get(i);
+            for (int j = 0; j < text.length(); ) {
+                int codePoint = Character.codePointAt(text, j);
+                j += Character.charCount(codePoint);
+                buffer.insert(codePoint);
+            }
+        }
+
+        redraw(reference, start, startColumn, oldCursorColumn, oldEndColumn);
+    }
+
+    /**
+     * Lists the candidates below the line, in columns (sorted down the columns), and then moves the cursor back to where it was. When
+     * there are more candidates than fit on the screen, only the first ones are listed.
+     */
+    private
+    void listCandidates(final Candidates candidates, final TerminalSize size) {
+        final int width = Math.max(1, size.getWidth());
+        final int total = candidates.size();
+        final List<CharSequence> listed = candidates.getListed();
+
+        int columnWidth = 0;
+        for (int i = 0; i < listed.size(); i++) {
+            columnWidth = Math.max(columnWidth, width(listed.get(i)));
+        }
+        columnWidth = Math.min(columnWidth, width - 1) + 2;
+
+        // the last column does not need the space between the columns
+        final int columns = Math.max(1, (width + 2) / columnWidth);
+        int rows = (total + columns - 1) / columns;
+        int lines = rows;
+
+        // the line must stay on the screen
+        final int maxLines = maxListLines(size);
+        if (lines > maxLines) {
+            lines = maxLines;
+            rows = maxLines - 1;
+        }
+        final int shown = Math.min(listed.size(), rows * columns);
+
+        // scroll the screen (if necessary) before the list is written, so that the saved cursor position is still correct afterwards.
+        // ESC D moves down a line (and scrolls at the bottom of the screen) without changing the column.
+        for (int i = 0; i < lines; i++) {
+            appendByte(ESC);
+            appendByte('D');
+        }
+        appendByte(ESC);
+        appendByte('[');
+        appendNumber(lines);
+        appendByte('A');
+        appendSequence('s');
+
+        for (int row = 0; row < rows; row++) {
+            appendByte('\r');
+            appendByte('\n');
+
+            for (int column = 0; column < columns; column++) {
+                final int index = column * rows + row;
+                if (index >= shown) {
+                    break;
+                }
+
+                final int textWidth = appendText(listed.get(index), columnWidth - 2);
+                if (column + 1 < columns && index + rows < shown) {
+                    for (int i = textWidth; i < columnWidth; i++) {
+                        appendByte(' ');
+                    }
+                }
+            }
+        }
+
+        if (shown < total) {
+            appendByte('\r');
+            appendByte('\n');
+            appendText("(" + (total - shown) + " more)", width - 1);
+        }
+
+        appendSequence('u');
+        flush();
+        listShown = true;
+    }
+
+    /**
+     * Erases the list of candidates (which is below the line)
+     */
+    private
+    void clearList(final LineBuffer reference) {
+        listShown = false;
+
+        appendMove(reference.cursorColumn(), reference.endColumn());
+        appendSequence('J');
+        appendMove(reference.endColumn(), reference.cursorColumn());
+        flush();
+    }
+
+    private
+    void bell() {
+        appendByte(7);
+        flush();
+    }
+
+    private
+    void startSearch(final List<LineBuffer> buffers) {
+        if (history == null) {
+            return;
+        }
+
+        searching = true;
+        searchPrefix.setLength(0);
+        searchIndex = -1;
+        searchColumn = reference(buffers).cursorColumn();
+
+        drawSearch();
+    }
+
+    /**
+     * Ctrl-R searches for an older match, backspace removes the last character of the prefix, and Ctrl-G cancels the search. Every
+     * other key accepts the match, and is then processed as usual.
+     */
+    private
+    void processSearch(final int typedChar, final List<LineBuffer> buffers) {
+        switch (typedChar) {
+            case 18: // Ctrl-R
+                if (searchIndex > 0) {
+                    int index = history.search(searchPrefix.toString(), searchIndex - 1);
+                    if (index >= 0) {
+                        searchIndex = index;
+                    }
+                }
+                break;
+            case 7: // Ctrl-G
+                endSearch(buffers, false);
+                return;
+            case '\b':
+            case 127:
+                if (searchPrefix.length() > 0) {
+                    searchPrefix.setLength(searchPrefix.offsetByCodePoints(searchPrefix.length(), -1));
+                    search(history.size() - 1);
+                }
+                break;
+            default:
+                if (typedChar < 32) {
+                    endSearch(buffers, true);
+                    process(typedChar, buffers);
+                    return;
+                }
+
+                searchPrefix.appendCodePoint(typedChar);
+                search(searchIndex >= 0 ? searchIndex : history.size() - 1);
+        }
+
+        drawSearch();
+    }
+
+    private
+    void search(final int fromIndex) {
+        searchIndex = searchPrefix.length() == 0 ? -1 : history.search(searchPrefix.toString(), fromIndex);
+    }
+
+    /**
+     * Ends the search, and shows the line again
+     *
+     * @param accept true to replace the line with the match (if there is one)
+     */
+    private
+    void endSearch(final List<LineBuffer> buffers, final boolean accept) {
+        searching = false;
+
+        final LineBuffer reference = reference(buffers);
+        if (accept && searchIndex >= 0) {
+            if (historyIndex >= history.size()) {
+                typedLine = reference.toString();
+            }
+
+            for (int i = 0; i < buffers.size(); i++) {
+                buffers.get(i).replace(history.get(searchIndex));
+            }
+            historyIndex = searchIndex;
+        }
+
+        if (Console.ENABLE_ECHO) {
+            // the search is on the screen instead of the line
+            redraw(reference, 0, 0, searchColumn, Integer.MAX_VALUE);
+        }
+    }
+
+    private
+    void drawSearch() {
+        if (!Console.ENABLE_ECHO) {
+            return;
+        }
+
+        appendMove(searchColumn, 0);
+
+        int column = appendText("(reverse-i-search)`", Integer.MAX_VALUE);
+        column += appendText(searchPrefix, Integer.MAX_VALUE);
+        column += appendText("': ", Integer.MAX_VALUE);
+        if (searchIndex >= 0) {
+            column += appendText(history.get(searchIndex), Integer.MAX_VALUE);
+        }
+
+        appendSequence('K');
+
+        searchColumn = column;
+        flush();
+    }
+
+    /**
+     * Appends the text, or as much of it as fits in the number of columns
+     *
+     * @return the number of columns of the appended text
+     */
+    private
+    int appendText(final CharSequence text, final int maxColumns) {
+        int columns = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = Character.codePointAt(text, i);
+            i += Character.charCount(codePoint);
+
+            int characterColumns = SupportedTerminal.getPrintableCharacters(codePoint);
+            if (columns + characterColumns > maxColumns) {
+                break;
+            }
+
+            appendCodePoint(codePoint);
+            columns += characterColumns;
+        }
+        return columns;
+    }
+
+    /**
+     * @return the number of columns of the text on the screen
+     */
+    private static
+    int width(final CharSequence text) {
+        int columns = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = Character.codePointAt(text, i);
+            i += Character.charCount(codePoint);
+
+            columns += SupportedTerminal.getPrintableCharacters(codePoint);
+        }
+        return columns;
+    }
+
+    /**
+     * Echoes a typed character that is not part of a line (ie: while nobody is reading a line).
+     */
+    void echo(final int typedChar) {
+        if (!Console.ENABLE_ECHO) {
+            return;
+        }
+
+        if (typedChar == '\n') {
+            appendByte('\n');
+        }
+        else {
+            appendCodePoint(typedChar);
+        }
+        flush();
+    }
+
+    private static
+    LineBuffer reference(final List<LineBuffer> buffers) {
+        // every line gets the same input, so they are all the same
+        return buffers.get(buffers.size() - 1);
+    }
+
+    private
+    void moveCursor(final int fromColumn, final int toColumn) {
+        if (!Console.ENABLE_ECHO || fromColumn == toColumn) {
+            return;
+        }
+
+        appendMove(fromColumn, toColumn);
+        flush();
+    }
+
+    /**
+     * Appends the (relative) cursor movement, from one column to the other
+     */
+    private
+    void appendMove(final int fromColumn, final int toColumn) {
+        if (fromColumn == toColumn) {
+            return;
+        }
+
+        appendByte(ESC);
+        appendByte('[');
+        appendNumber(Math.abs(toColumn - fromColumn));
+        appendByte(toColumn < fromColumn ? 'D' : 'C');
+    }
+
+    /**
+     * Appends a character, as it is shown on the screen. This must match {@link SupportedTerminal#getPrintableCharacters(int)}
+     */
+    private
+    void appendCodePoint(final int codePoint) {
+        if (codePoint < 32 || codePoint == 127) {
+            appendByte('^');
+            appendByte(codePoint == 127 ? '?' : codePoint + 64);
+        }
+        else if (codePoint < 128) {
+            appendByte(codePoint);
+        }
+        else if (codePoint < 128 + 32) {
+            appendByte('M');
+            appendByte('-');
+            appendByte('^');
+            appendByte(codePoint - 128 + 64);
+        }
+        else if (codePoint < 0x800) {
+            appendByte(0xC0 | codePoint >> 6);
+            appendByte(0x80 | codePoint & 0x3F);
+        }
+        else if (codePoint < 0x10000) {
+            appendByte(0xE0 | codePoint >> 12);
+            appendByte(0x80 | codePoint >> 6 & 0x3F);
+            appendByte(0x80 | codePoint & 0x3F);
+        }
+        else {
+            appendByte(0xF0 | codePoint >> 18);
+            appendByte(0x80 | codePoint >> 12 & 0x3F);
+            appendByte(0x80 | codePoint >> 6 & 0x3F);
+            appendByte(0x80 | codePoint & 0x3F);
+        }
+    }
+
+    /**
+     * Appends a control sequence that has no parameters (ESC [ and the final character)
+     */
+    private
+    void appendSequence(final int finalChar) {
+        appendByte(ESC);
+        appendByte('[');
+        appendByte(finalChar);
+    }
+
+    private
+    void appendNumber(final int value) {
+        if (value >= 10) {
+            appendNumber(value / 10);
+        }
+        appendByte('0' + value % 10);
+    }
+
+    private
+    void appendByte(final int b) {
+        if (outputLength == output.length) {
+            output = Arrays.copyOf(output, outputLength << 1);
+        }
+        output[outputLength++] = (byte) b;
+    }
+
+    private
+    void flush() {
+        if (outputLength > 0) {
+            out.write(output, 0, outputLength);
+            out.flush();
+            outputLength = 0;
+        }
+    }
+}
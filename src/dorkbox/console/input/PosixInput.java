@@ -0,0 +1,46 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.input;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+/**
+ * JNA direct-mapping for reading input in bulk (CLibraryPosix can only read into a single int).
+ */
+final
+class PosixInput {
+    static final int EINTR = 4;
+
+    static {
+        Native.register("c");
+    }
+
+    /**
+     * Reads up to count bytes from the file descriptor into the (native) buffer.
+     *
+     * @return the number of bytes read, or 0 at end of file
+     *
+     * @throws LastErrorException if there was an error (which has the value of errno)
+     */
+    static native
+    int read(int fd, Pointer buffer, int count) throws LastErrorException;
+
+    private
+    PosixInput() {
+    }
+}
@@ -16,10 +16,16 @@
 package dorkbox.console.input;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
-import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Memory;
 
+import dorkbox.console.util.Utf8Decoder;
 import dorkbox.jna.linux.CLibraryPosix;
 import dorkbox.jna.linux.structs.Termios;
 
@@ -33,8 +39,13 @@ class PosixTerminal extends SupportedTerminal {
 
     private final Termios original = new Termios();
     private Termios termInfo = new Termios();
-    private ByteBuffer windowSizeBuffer = ByteBuffer.allocate(8);
-    private final IntByReference inputRef = new IntByReference();
+    private final ByteBuffer windowSizeBuffer = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+
+    // input is read in bulk (one syscall for everything that is available, ie: pasted text), instead of one syscall per byte
+    private static final int INPUT_BUFFER_SIZE = 4096;
+    private final Memory inputBuffer = new Memory(INPUT_BUFFER_SIZE);
+    private final byte[] inputBytes = new byte[INPUT_BUFFER_SIZE];
+    private final Utf8Decoder decoder = new Utf8Decoder();
 
     public
     PosixTerminal() throws IOException {
@@ -71,6 +82,8 @@ class PosixTerminal extends SupportedTerminal {
         if (CLibraryPosix.tcsetattr(0, Termios.TCSANOW, this.termInfo) != 0) {
             throw new IOException("Can not set terminal flags");
         }
+
+        installResizeHandler();
     }
 
     /**
@@ -86,31 +99,70 @@ class PosixTerminal extends SupportedTerminal {
     }
 
     /**
-     * Returns number of columns in the terminal.
+     * Refreshes the size of the terminal when it is resized (SIGWINCH), so it does not have to be checked periodically.
+     * <p>
+     * sun.misc.Signal is used via reflection (like JLine does), since it is not available on every JVM (or to every compiler).
      */
-    @SuppressWarnings("NumericCastThatLosesPrecision")
-    @Override
-    public final
-    int getWidth() {
-        if (CLibraryPosix.ioctl(0, CLibraryPosix.TIOCGWINSZ, this.windowSizeBuffer) != 0) {
-            return DEFAULT_WIDTH;
+    private
+    void installResizeHandler() {
+        try {
+            final Class<?> signalClass = Class.forName("sun.misc.Signal");
+            final Class<?> signalHandlerClass = Class.forName("sun.misc.SignalHandler");
+
+            final Object signal = signalClass.getConstructor(String.class).newInstance("WINCH");
+            final Method handleMethod = signalClass.getMethod("handle", signalClass, signalHandlerClass);
+
+            final Object defaultHandler = signalHandlerClass.getField("SIG_DFL").get(null);
+            final Object ignoreHandler = signalHandlerClass.getField("SIG_IGN").get(null);
+            final Object[] previous = new Object[1];
+
+            Object handler = Proxy.newProxyInstance(signalHandlerClass.getClassLoader(), new Class<?>[] {signalHandlerClass},
+                                                    new InvocationHandler() {
+                @Override
+                public
+                Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                    if (method.getDeclaringClass() == Object.class) {
+                        // equals, hashCode, toString
+                        if (method.getName().equals("equals")) {
+                            return proxy == args[0];
+                        }
+                        if (method.getName().equals("hashCode")) {
+                            return System.identityHashCode(proxy);
+                        }
+                        return "SIGWINCH handler";
+                    }
+
+                    refreshSize();
+
+                    // let whatever was handling this before us know about it as well
+                    Object previousHandler = previous[0];
+                    if (previousHandler != null && previousHandler != defaultHandler && previousHandler != ignoreHandler) {
+                        method.invoke(previousHandler, args);
+                    }
+                    return null;
+                }
+            });
+
+            previous[0] = handleMethod.invoke(null, signal, handler);
+            checkSizePeriodically = false;
+        } catch (Throwable e) {
+            // not every JVM/OS supports this signal, in which case the size is checked periodically
+            this.logger.debug("Unable to handle SIGWINCH, the terminal size will be checked periodically.", e);
         }
-
-        return (short) (0x000000FF & this.windowSizeBuffer.get(2) + (0x000000FF & this.windowSizeBuffer.get(3)) * 256);
     }
 
-    /**
-     * Returns number of rows in the terminal.
-     */
-    @SuppressWarnings("NumericCastThatLosesPrecision")
     @Override
-    public final
-    int getHeight() {
+    protected final
+    TerminalSize querySize() {
         if (CLibraryPosix.ioctl(0, CLibraryPosix.TIOCGWINSZ, this.windowSizeBuffer) != 0) {
-            return DEFAULT_HEIGHT;
+            return new TerminalSize(DEFAULT_WIDTH, DEFAULT_HEIGHT);
         }
 
-        return (short) (0x000000FF & this.windowSizeBuffer.get(0) + (0x000000FF & this.windowSizeBuffer.get(1)) * 256);
+        // struct winsize { unsigned short ws_row; unsigned short ws_col; ... }
+        int height = this.windowSizeBuffer.getShort(0) & 0xFFFF;
+        int width = this.windowSizeBuffer.getShort(2) & 0xFFFF;
+
+        return new TerminalSize(width < 1 ? DEFAULT_WIDTH : width, height < 1 ? DEFAULT_HEIGHT : height);
     }
 
     @Override
@@ -155,8 +207,35 @@ class PosixTerminal extends SupportedTerminal {
 
     @Override
     protected final
-    int doRead() {
-        CLibraryPosix.read(0, inputRef, 1);
-        return inputRef.getValue();
+    int doRead(final int[] buffer) {
+        // the decoder can produce one more code point than there are bytes (when a previous sequence was cut short)
+        final int length = Math.min(buffer.length - 1, INPUT_BUFFER_SIZE);
+
+        int count;
+        while (true) {
+            try {
+                count = PosixInput.read(0, inputBuffer, length);
+            } catch (LastErrorException e) {
+                if (e.getErrorCode() != PosixInput.EINTR) {
+                    this.logger.error("Unable to read from the console", e);
+                    return -1;
+                }
+                // interrupted by a signal, try again
+                continue;
+            }
+
+            if (count <= 0) {
+                // end of input
+                return -1;
+            }
+
+            inputBuffer.read(0, inputBytes, 0, count);
+
+            // input is UTF-8, and a multi-byte character can be split across reads. If so, wait for the rest of it.
+            count = decoder.decode(inputBytes, 0, count, buffer);
+            if (count > 0) {
+                return count;
+            }
+        }
     }
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.input;
+
+/**
+ * Notified when the size of the terminal changes.
+ */
+public
+interface ResizeListener {
+    /**
+     * Called when the size of the terminal has changed. This is called from whichever thread noticed the change (which can be a
+     * signal handling thread), so it should return quickly.
+     *
+     * @param terminal the terminal that was resized
+     * @param size the new size of the terminal
+     */
+    void onResize(Terminal terminal, TerminalSize size);
+}
@@ -18,13 +18,13 @@ package dorkbox.console.input;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 
-import dorkbox.bytes.ByteBuffer2;
 import dorkbox.console.Console;
-import dorkbox.console.output.Ansi;
 import dorkbox.console.util.CharHolder;
+import dorkbox.console.util.DisplayWidth;
 import dorkbox.util.FastThreadLocal;
 
 public abstract
@@ -35,6 +35,27 @@ class SupportedTerminal extends Terminal implements Runnable {
     protected final Object inputLockSingle = new Object();
 
     protected final List<CharHolder> charInputBuffers = new ArrayList<CharHolder>();
+
+    // input that arrives while nobody is reading (ie: type-ahead), is given to the next thread that calls read(). Input that arrives
+    // while a line is read is never kept here.
+    private final CharHolder unclaimedInput = new CharHolder();
+
+    // the most input that is dispatched at once
+    private static final int INPUT_BATCH_SIZE = 4096;
+
+    // incremented by close(), so that waiting readers know they were released
+    private volatile int releaseCount = 0;
+
+    // the size is cached, and only queried again after this much time (or when the terminal tells us that it changed)
+    private static final long SIZE_CHECK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final Object sizeLock = new Object();
+    private volatile TerminalSize size = null;
+    private volatile long sizeCheckTime = 0L;
+
+    // false when the terminal tells us when the size changes, so the cached size is always correct
+    volatile boolean checkSizePeriodically = true;
+
     protected final FastThreadLocal<CharHolder> charInput = new FastThreadLocal<CharHolder>() {
         @Override
         public
@@ -43,45 +64,196 @@ class SupportedTerminal extends Terminal implements Runnable {
         }
     };
 
-    private final List<ByteBuffer2> lineInputBuffers = new ArrayList<ByteBuffer2>();
-    private final FastThreadLocal<ByteBuffer2> lineInput = new FastThreadLocal<ByteBuffer2>() {
+    private final List<LineBuffer> lineInputBuffers = new ArrayList<LineBuffer>();
+
+    // line inputs that have received an entire line, but that have not been returned by readLine() yet
+    private final List<LineBuffer> completedLineBuffers = new ArrayList<LineBuffer>();
+    private final FastThreadLocal<LineBuffer> lineInput = new FastThreadLocal<LineBuffer>() {
         @Override
         public
-        ByteBuffer2 initialValue() {
-            return new ByteBuffer2(8, -1);
+        LineBuffer initialValue() {
+            return new LineBuffer();
         }
     };
 
+    // erases the backspace from the screen: ESC [ <column> G (cursor to column), then ESC [ K (erase to the end of the line). Only the
+    // column digits change, so this is reused for every backspace.
+    private static final int ERASE_COLUMN_START = 2;
+    private final byte[] eraseSequence = new byte[ERASE_COLUMN_START + 10 + 4];
+
+    // edits the lines and echoes the input (instead of the terminal), null when line editing is disabled
+    private final LineEditor lineEditor;
+
     public
     SupportedTerminal() {
+        eraseSequence[0] = 27;
+        eraseSequence[1] = '[';
+
+        if (Console.ENABLE_LINE_EDITING && Console.ENABLE_ANSI) {
+            History history = Console.HISTORY_SIZE > 0 ? new History(Console.HISTORY_SIZE, Console.HISTORY_FILE) : null;
+            lineEditor = new LineEditor(this, out, history);
+        }
+        else {
+            lineEditor = null;
+        }
+    }
+
+    /**
+     * @return true if the input is echoed by the line editor, in which case the terminal must not echo it.
+     */
+    @Override
+    final
+    boolean echoesInput() {
+        return lineEditor != null;
+    }
+
+    /**
+     * @return true if the lines are edited by the line editor, which decodes the escape sequences of the arrow keys, Home/End and Delete
+     */
+    final
+    boolean editsLines() {
+        return lineEditor != null;
+    }
+
+    /**
+     * Returns the size of the terminal. This is cached, and is only queried again when the terminal was resized (or, if the terminal
+     * cannot tell us when it was resized, at most every 500ms).
+     */
+    @Override
+    public final
+    TerminalSize getSize() {
+        TerminalSize size = this.size;
+
+        if (size == null || (checkSizePeriodically && System.nanoTime() - sizeCheckTime > SIZE_CHECK_INTERVAL)) {
+            size = refreshSize();
+        }
+
+        return size;
+    }
+
+    /**
+     * Queries the size of the terminal again, and notifies the resize listeners if it changed.
+     */
+    final
+    TerminalSize refreshSize() {
+        TerminalSize newSize;
+        TerminalSize oldSize;
+
+        synchronized (sizeLock) {
+            newSize = querySize();
+            oldSize = size;
+
+            sizeCheckTime = System.nanoTime();
+            size = newSize;
+        }
+
+        if (oldSize != null && !oldSize.equals(newSize)) {
+            notifyResize(newSize);
+        }
+
+        return newSize;
     }
 
     /**
-     * Reads single character input from the console.
+     * Queries the size of the terminal. This is only called by one thread at a time.
+     */
+    protected abstract
+    TerminalSize querySize();
+
+    /**
+     * Reads single character input from the console. Characters outside of the BMP are returned as a surrogate pair, over two calls.
+     * <p>
+     * Input that arrives between calls to read() (while nobody is reading a line) is queued (up to a limit), so it is not lost.
      *
      * @return -1 if no data or problems
      */
     @Override
     public final
     int read() {
+        return take(false, -1L);
+    }
+
+    /**
+     * Reads single character input from the console, as a unicode code point.
+     * <p>
+     * Input that arrives between calls to readCodePoint() (while nobody is reading a line) is queued (up to a limit), so it is not lost.
+     *
+     * @return -1 if no data or problems
+     */
+    @Override
+    public final
+    int readCodePoint() {
+        return take(true, -1L);
+    }
+
+    /**
+     * Reads single character input from the console, waiting at most for the specified time.
+     *
+     * @return -1 if no data (before the timeout elapsed) or problems
+     */
+    @Override
+    public final
+    int read(final long timeout, final TimeUnit unit) {
+        return take(false, Math.max(0L, unit.toNanos(timeout)));
+    }
+
+    /**
+     * Reads single character input from the console, if there is any. This does not block.
+     * <p>
+     * Just like read(), input that arrives between calls is queued, so polling with tryRead() does not lose any input.
+     *
+     * @return -1 if no data or problems
+     */
+    @Override
+    public final
+    int tryRead() {
+        return take(false, 0L);
+    }
+
+    /**
+     * @param timeoutNanos how long to wait for input. -1 to wait forever.
+     */
+    private
+    int take(final boolean asCodePoint, final long timeoutNanos) {
         CharHolder holder = charInput.get();
 
         synchronized (inputLockSingle) {
             // don't want to register a read() WHILE we are still processing the current input.
-            // also adds it to the global list of char inputs
+            // also adds it to the global list of char inputs, for as long as we are reading
             charInputBuffers.add(holder);
+            unclaimedInput.drainTo(holder);
 
             try {
-                inputLockSingle.wait();
-            } catch (InterruptedException e) {
-                return -1;
-            }
+                final int released = releaseCount;
+                final long deadline = System.nanoTime() + timeoutNanos;
 
-            char c = holder.character;
+                while (holder.isEmpty()) {
+                    if (released != releaseCount) {
+                        return -1;
+                    }
+
+                    try {
+                        if (!await(inputLockSingle, timeoutNanos, deadline)) {
+                            return -1;
+                        }
+                    } catch (InterruptedException e) {
+                        return -1;
+                    }
+                }
 
-            // also clears and removes from the global list of char inputs
-            charInputBuffers.remove(holder);
-            return c;
+                if (asCodePoint) {
+                    return holder.take();
+                }
+                return holder.takeChar();
+            } finally {
+                charInputBuffers.remove(holder);
+
+                if (charInputBuffers.isEmpty()) {
+                    // the rest of what arrived (ie: the rest of a batch) is type-ahead for the next call
+                    holder.drainTo(unclaimedInput);
+                }
+                holder.clear();
+            }
         }
     }
 
@@ -93,35 +265,88 @@ class SupportedTerminal extends Terminal implements Runnable {
     @Override
     public final
     char[] readLineChars() {
-        ByteBuffer2 buffer = lineInput.get();
+        return takeLine(-1L);
+    }
+
+    /**
+     * Reads a line of characters from the console as a character array, defined as everything before the 'ENTER' key is pressed, waiting
+     * at most for the specified time.
+     * <p>
+     * If the timeout elapses while a line is being typed, what was typed so far is kept, and is part of the line returned by the next
+     * call. Input that arrives while no thread is waiting for a line is not part of a line.
+     *
+     * @return null if the timeout elapsed, empty char[] if no data
+     */
+    @Override
+    public final
+    char[] readLineChars(final long timeout, final TimeUnit unit) {
+        return takeLine(Math.max(0L, unit.toNanos(timeout)));
+    }
+
+    /**
+     * @param timeoutNanos how long to wait for input. -1 to wait forever.
+     */
+    private
+    char[] takeLine(final long timeoutNanos) {
+        LineBuffer buffer = lineInput.get();
 
         synchronized (inputLockLine) {
             // don't want to register a readLine() WHILE we are still processing the current line info.
-            // also adds it to the global list of line inputs
+            // also adds it to the global list of line inputs, for as long as we are waiting
             lineInputBuffers.add(buffer);
 
             try {
-                inputLockLine.wait();
-            } catch (InterruptedException e) {
-                return EMPTY_LINE;
-            }
+                final int released = releaseCount;
+                final long deadline = System.nanoTime() + timeoutNanos;
 
-            int len = buffer.position();
-            if (len == 0) {
-                return EMPTY_LINE;
-            }
+                while (!completedLineBuffers.contains(buffer)) {
+                    if (released != releaseCount) {
+                        buffer.clearSecure();
+                        return EMPTY_LINE;
+                    }
 
-            buffer.rewind();
-            char[] readChars = buffer.readChars(len / 2); // java always stores chars in 2 bytes
+                    try {
+                        if (!await(inputLockLine, timeoutNanos, deadline)) {
+                            // keep what was typed so far, for the next call
+                            return null;
+                        }
+                    } catch (InterruptedException e) {
+                        buffer.clearSecure();
+                        return EMPTY_LINE;
+                    }
+                }
 
-            // dump the chars in the buffer (safer for passwords, etc)
-            buffer.clearSecure();
+                completedLineBuffers.remove(buffer);
 
-            // also clears and removes from the global list of line inputs
-            lineInputBuffers.remove(buffer);
+                // also dumps the chars in the buffer (safer for passwords, etc)
+                return buffer.takeChars();
+            } finally {
+                lineInputBuffers.remove(buffer);
+            }
+        }
+    }
 
-            return readChars;
+    /**
+     * Waits on the lock (which must be held) until notified, or until the deadline.
+     *
+     * @param timeoutNanos -1 to wait forever
+     *
+     * @return false if the deadline has passed
+     */
+    private static
+    boolean await(final Object lock, final long timeoutNanos, final long deadline) throws InterruptedException {
+        if (timeoutNanos < 0L) {
+            lock.wait();
+            return true;
         }
+
+        final long remaining = deadline - System.nanoTime();
+        if (remaining <= 0L) {
+            return false;
+        }
+
+        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+        return true;
     }
 
     /**
@@ -131,6 +356,7 @@ class SupportedTerminal extends Terminal implements Runnable {
     public final
     void close() {
         synchronized (inputLockSingle) {
+            releaseCount++;
             inputLockSingle.notifyAll();
         }
 
@@ -140,113 +366,147 @@ class SupportedTerminal extends Terminal implements Runnable {
     }
 
     /**
-     * Reads a single character from whatever underlying stream is available.
+     * Reads as many characters as are available (at least 1, but not more than the size of the buffer) from whatever underlying stream is
+     * available. This blocks until at least 1 character is available.
+     *
+     * @return the number of characters read into the buffer, or -1 if there is no more input (or there were problems)
      */
-    protected abstract int doRead();
+    protected abstract int doRead(int[] buffer);
 
     @Override
     public
     void run() {
         final Logger logger2 = logger;
-        final char overWriteChar = ' ';
 
-        Ansi ansi = null;
+        final int[] input = new int[INPUT_BATCH_SIZE];
+
+        int count;
         int typedChar;
-        char asChar;
 
-        while ((typedChar = doRead()) != -1) {
-            // don't let anyone add a new reader while we are still processing the current actions
-            asChar = (char) typedChar;
+        while ((count = doRead(input)) != -1) {
+            // the line inputs are changed by readLine() (and on each new line), so the entire batch is processed while holding the lock.
+            // Whether anyone is reading lines also decides where the characters for read() go, so it is held while they are delivered.
+            synchronized (inputLockLine) {
+                // notify everyone waiting for a character. The entire batch is delivered at once.
+                synchronized (inputLockSingle) {
+                    // have to do readChar first (readLine has to deal with \b and \n
+                    for (int i = 0; i < count; i++) {
+                        typedChar = input[i];
+
+                        if (logger2.isTraceEnabled()) {
+                            logger2.trace("READ: {} ({})", new String(Character.toChars(typedChar)), typedChar);
+                        }
 
-            if (logger2.isTraceEnabled()) {
-                logger2.trace("READ: {} ({})", asChar, typedChar);
-            }
+                        if (charInputBuffers.isEmpty()) {
+                            if (lineInputBuffers.isEmpty()) {
+                                // nobody is reading yet, keep it for the first call to read()
+                                unclaimedInput.add(typedChar);
+                            }
+                        }
+                        else {
+                            for (CharHolder holder : charInputBuffers) {
+                                if (!holder.add(typedChar) && logger2.isTraceEnabled()) {
+                                    logger2.trace("Input queue is full, discarding: {}", typedChar);
+                                }
+                            }
+                        }
+                    }
 
-            // notify everyone waiting for a character.
-            synchronized (inputLockSingle) {
-                // have to do readChar first (readLine has to deal with \b and \n
-                for (CharHolder holder : charInputBuffers) {
-                    holder.character = asChar; // copy by value
+                    inputLockSingle.notifyAll();
                 }
 
-                inputLockSingle.notifyAll();
-            }
-
-            // now to handle readLine stuff
+                for (int index = 0; index < count; index++) {
+                    typedChar = input[index];
 
-            // if we type a backspace key, swallow it + previous in READLINE. READCHAR will have it passed anyways.
-            if (Console.ENABLE_BACKSPACE && asChar == '\b') {
-                int position = 0;
-                char[] overwrite = null;
+                    // now to handle readLine stuff
 
-                // clear ourself + one extra.
-                for (ByteBuffer2 buffer : lineInputBuffers) {
-                    // size of the buffer BEFORE our backspace was typed
-                    int length = buffer.position();
-                    int amtToOverwrite = 4; // 2*2 backspace is always 2 chars (^?) * 2 because it's bytes
+                    if (lineEditor != null && typedChar != '\n') {
+                        // we echo the input ourselves
+                        if (lineInputBuffers.isEmpty()) {
+                            lineEditor.echo(typedChar);
+                        }
+                        else {
+                            lineEditor.process(typedChar, lineInputBuffers);
+                        }
+                    }
+                    // if we type a backspace key, swallow it + previous in READLINE. READCHAR will have it passed anyways.
+                    else if (Console.ENABLE_BACKSPACE && typedChar == '\b') {
+                        LineBuffer lastBuffer = null;
 
-                    if (length > 1) {
-                        char charAt = buffer.readChar(length - 2);
-                        amtToOverwrite += getPrintableCharacters(charAt);
+                        for (LineBuffer buffer : lineInputBuffers) {
+                            buffer.deleteBefore();
+                            lastBuffer = buffer;
+                        }
 
-                        // delete last item in our buffer
-                        length -= 2;
-                        buffer.setPosition(length);
+                        if (Console.ENABLE_ANSI && lastBuffer != null) {
+                            // clear ourself (and the echoed backspace) from where the deleted character was
+                            eraseToEnd(lastBuffer.cursorColumn() + 1);
+                        }
+                    }
+                    else if (typedChar == '\n') {
+                        // ignoring \r, because \n is ALWAYS the last character in a new line sequence. (even for windows, which we changed)
+                        if (lineEditor != null) {
+                            lineEditor.endLine(lineInputBuffers);
+                        }
 
-                        // now figure out where the cursor is really at.
-                        // this is more memory friendly than buf.toString.length
-                        for (int i = 0; i < length; i += 2) {
-                            charAt = buffer.readChar(i);
-                            position += getPrintableCharacters(charAt);
+                        synchronized (inputLockSingle) {
+                            // this was consumed as line input, so it is not type-ahead for read() (and passwords are not kept)
+                            unclaimedInput.clear();
                         }
 
-                        position++;
+                        // these lines are done. Anything typed from now on is part of the next line.
+                        completedLineBuffers.addAll(lineInputBuffers);
+                        lineInputBuffers.clear();
+                        inputLockLine.notifyAll();
                     }
-
-                    overwrite = new char[amtToOverwrite];
-                    for (int i = 0; i < amtToOverwrite; i++) {
-                        overwrite[i] = overWriteChar;
+                    else {
+                        // only append if we are not a new line.
+                        // our windows console PREVENTS us from returning '\r' (it truncates '\r\n', and returns just '\n')
+                        for (LineBuffer buffer : lineInputBuffers) {
+                            buffer.insert(typedChar);
+                        }
                     }
                 }
+            }
+        }
+    }
 
-                if (Console.ENABLE_ANSI && overwrite != null) {
-                    if (ansi == null) {
-                        ansi = Ansi.ansi();
-                    }
-
-                    // move back however many, over write, then go back again
-                    out.print(ansi.cursorToColumn(position));
-                    out.print(overwrite);
-                    out.print(ansi.cursorToColumn(position));
-                    out.flush();
+    /**
+     * Moves the cursor to the column (starting at 1), and erases everything after it, with a single write.
+     */
+    private
+    void eraseToEnd(final int column) {
+        final byte[] sequence = eraseSequence;
+
+        // the digits of the column
+        int digits = 1;
+        for (int value = column; value >= 10; value /= 10) {
+            digits++;
+        }
 
-                }
-            }
-            else if (asChar == '\n') {
-                // ignoring \r, because \n is ALWAYS the last character in a new line sequence. (even for windows, which we changed)
-                synchronized (inputLockLine) {
-                    inputLockLine.notifyAll();
-                }
-            }
-            else {
-                // only append if we are not a new line.
-                // our windows console PREVENTS us from returning '\r' (it truncates '\r\n', and returns just '\n')
-                for (ByteBuffer2 buffer : lineInputBuffers) {
-                    buffer.writeChar(asChar);
-                }
-            }
+        int index = ERASE_COLUMN_START + digits;
+        for (int value = column; index > ERASE_COLUMN_START; value /= 10) {
+            sequence[--index] = (byte) ('0' + value % 10);
         }
+
+        index = ERASE_COLUMN_START + digits;
+        sequence[index++] = 'G';
+        sequence[index++] = 27;
+        sequence[index++] = '[';
+        sequence[index++] = 'K';
+
+        out.write(sequence, 0, index);
+        out.flush();
     }
 
     private static final int PLUS_TWO_MAYBE = 128 + 32;
-    private static final int PLUS_ONE = 128 + 127;
 
     /**
-     * Return the number of characters that will be printed when the specified character is echoed to the screen
+     * Return the number of characters that will be printed when the specified character (code point) is echoed to the screen
      * <p/>
      * Adapted from cat by Torbjorn Granlund, as repeated in stty by David MacKenzie.
      */
-    private static
+    static
     int getPrintableCharacters(final int ch) {
         // StringBuilder sbuff = new StringBuilder();
 
@@ -260,28 +520,17 @@ class SupportedTerminal extends Terminal implements Runnable {
                 // sbuff.append('?');
                 return 2;
             }
+            else if (ch >= PLUS_TWO_MAYBE) {
+                // input is decoded from UTF-8, so this is echoed as itself (which is 2 columns for wide characters)
+                // sbuff.appendCodePoint(ch);
+                return DisplayWidth.width(ch);
+            }
             else {
                 // sbuff.append('M');
                 // sbuff.append('-');
-                int count = 2;
-
-                if (ch >= PLUS_TWO_MAYBE) {
-                    if (ch < PLUS_ONE) {
-                        // sbuff.append((char) (ch - 128));
-                        count++;
-                    }
-                    else {
-                        // sbuff.append('^');
-                        // sbuff.append('?');
-                        count += 2;
-                    }
-                }
-                else {
-                    // sbuff.append('^');
-                    // sbuff.append((char) (ch - 128 + 64));
-                    count += 2;
-                }
-                return count;
+                // sbuff.append('^');
+                // sbuff.append((char) (ch - 128 + 64));
+                return 4;
             }
         }
         else {
@@ -16,6 +16,9 @@
 package dorkbox.console.input;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import dorkbox.console.Console;
 
@@ -29,6 +32,9 @@ class Terminal {
     static final int DEFAULT_HEIGHT = 24;
     final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(getClass());
 
+    private final List<ResizeListener> resizeListeners = new CopyOnWriteArrayList<ResizeListener>();
+    private volatile Completer completer = null;
+
     Terminal() {
     }
 
@@ -41,11 +47,76 @@ class Terminal {
     public abstract
     void restore() throws IOException;
 
+    /**
+     * Returns the size of the terminal. Both the width and height are from the same query, so they are consistent with each other.
+     */
     public abstract
-    int getWidth();
+    TerminalSize getSize();
 
-    public abstract
-    int getHeight();
+    /**
+     * Returns number of columns in the terminal.
+     */
+    public final
+    int getWidth() {
+        return getSize().getWidth();
+    }
+
+    /**
+     * Returns number of rows in the terminal.
+     */
+    public final
+    int getHeight() {
+        return getSize().getHeight();
+    }
+
+    /**
+     * Adds a listener that is notified when the size of the terminal changes
+     */
+    public final
+    void addResizeListener(final ResizeListener listener) {
+        resizeListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener that was notified when the size of the terminal changes
+     */
+    public final
+    void removeResizeListener(final ResizeListener listener) {
+        resizeListeners.remove(listener);
+    }
+
+    /**
+     * Notifies the resize listeners that the size of the terminal has changed
+     */
+    final
+    void notifyResize(final TerminalSize size) {
+        for (ResizeListener listener : resizeListeners) {
+            try {
+                listener.onResize(this, size);
+            } catch (Exception e) {
+                logger.error("Error notifying a resize listener", e);
+            }
+        }
+    }
+
+    /**
+     * Sets the completer that is used when Tab is pressed while a line is read. This is only used when the line is edited by us (see
+     * {@link Console#ENABLE_LINE_EDITING}), and when echo is enabled.
+     *
+     * @param completer null to disable completion, in which case a Tab is part of the line
+     */
+    public final
+    void setCompleter(final Completer completer) {
+        this.completer = completer;
+    }
+
+    /**
+     * @return the completer that is used when Tab is pressed while a line is read, or null if there is none
+     */
+    public final
+    Completer getCompleter() {
+        return completer;
+    }
 
     /**
      * Enables or disables CTRL-C behavior in the console
@@ -62,7 +133,16 @@ class Terminal {
     public final
     void setEchoEnabled(final boolean enabled) {
         Console.ENABLE_ECHO = enabled;
-        doSetEchoEnabled(enabled);
+
+        // when we echo the input ourselves, the terminal must never echo it
+        doSetEchoEnabled(enabled && !echoesInput());
+    }
+
+    /**
+     * @return true if the input is echoed by us (instead of by the terminal)
+     */
+    boolean echoesInput() {
+        return false;
     }
 
     /**
@@ -73,6 +153,30 @@ class Terminal {
     public abstract
     int read();
 
+    /**
+     * Reads single character input from the console, as a unicode code point (which can be outside of the BMP).
+     *
+     * @return -1 if no data or problems
+     */
+    public abstract
+    int readCodePoint();
+
+    /**
+     * Reads single character input from the console, waiting at most for the specified time.
+     *
+     * @return -1 if no data (before the timeout elapsed) or problems
+     */
+    public abstract
+    int read(long timeout, TimeUnit unit);
+
+    /**
+     * Reads single character input from the console, if there is any. This does not block.
+     *
+     * @return -1 if no data or problems
+     */
+    public abstract
+    int tryRead();
+
     /**
      * Reads a line of characters from the console as a character array, defined as everything before the 'ENTER' key is pressed
      *
@@ -81,6 +185,17 @@ class Terminal {
     public abstract
     char[] readLineChars();
 
+    /**
+     * Reads a line of characters from the console as a character array, defined as everything before the 'ENTER' key is pressed, waiting
+     * at most for the specified time.
+     * <p>
+     * If the timeout elapses while a line is being typed, that input is kept, and is part of the line returned by the next call.
+     *
+     * @return null if the timeout elapsed, empty char[] if no data
+     */
+    public abstract
+    char[] readLineChars(long timeout, TimeUnit unit);
+
     /**
      * Reads a single line of characters, defined as everything before the 'ENTER' key is pressed
      * @return null if no data
@@ -94,6 +209,20 @@ class Terminal {
         return new String(line);
     }
 
+    /**
+     * Reads a single line of characters, defined as everything before the 'ENTER' key is pressed, waiting at most for the specified time.
+     *
+     * @return null if no data (before the timeout elapsed)
+     */
+    public
+    String readLine(final long timeout, final TimeUnit unit) {
+        char[] line = readLineChars(timeout, unit);
+        if (line == null) {
+            return null;
+        }
+        return new String(line);
+    }
+
     /**
      * Reads a line of characters from the console as a character array, defined as everything before the 'ENTER' key is pressed
      *
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.input;
+
+/**
+ * The size of the terminal (the visible area, in characters).
+ */
+public final
+class TerminalSize {
+    private final int width;
+    private final int height;
+
+    public
+    TerminalSize(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Returns number of columns in the terminal.
+     */
+    public
+    int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns number of rows in the terminal.
+     */
+    public
+    int getHeight() {
+        return height;
+    }
+
+    @Override
+    public
+    boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TerminalSize)) {
+            return false;
+        }
+
+        TerminalSize that = (TerminalSize) o;
+        return width == that.width && height == that.height;
+    }
+
+    @Override
+    public
+    int hashCode() {
+        return 31 * width + height;
+    }
+
+    @Override
+    public
+    String toString() {
+        return width + "w x " + height + "h";
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.input;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Completes the word before the cursor (everything after the last whitespace) with the candidates that start with it.
+ * <p>
+ * The candidates are kept in a compact prefix tree (where chains of nodes with a single child are merged into one edge), which is stored
+ * in a few arrays instead of as an object per node. The labels of the edges are ranges of a single shared char array. Every node knows
+ * how many candidates start with it, so finding the candidates for a word only depends on the length of the word (and on how many of
+ * them are kept), not on the number of candidates in the tree. Hundreds of thousands of candidates are not a problem.
+ * <p>
+ * This is thread safe, candidates can be added while the completer is in use.
+ */
+public
+class TrieCompleter implements Completer {
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    // the labels of every edge
+    private char[] labels = new char[1024];
+    private int labelsLength = 0;
+
+    // the nodes. Every node (except the root) has the label of the edge from its parent, and the children of a node are a linked list
+    // that is sorted by the first char of their labels.
+    private int[] labelStart = new int[64];
+    private int[] labelLength = new int[64];
+    private int[] firstChild = new int[64];
+    private int[] nextSibling = new int[64];
+    private boolean[] candidate = new boolean[64];
+    // the number of candidates that start with the node (including the node itself)
+    private int[] count = new int[64];
+    private int nodeCount = 0;
+
+    // the nodes from the root to the node that is added, so their counts can be incremented
+    private int[] path = new int[16];
+
+    private int size = 0;
+
+    public
+    TrieCompleter() {
+        newNode();
+    }
+
+    public
+    TrieCompleter(final Collection<? extends CharSequence> candidates) {
+        this();
+        addAll(candidates);
+    }
+
+    /**
+     * Adds a candidate
+     *
+     * @return false if the candidate was already added
+     */
+    public synchronized
+    boolean add(final CharSequence text) {
+        final int length = text.length();
+        int node = ROOT;
+        int index = 0;
+        int depth = 0;
+
+        while (index < length) {
+            path = push(path, depth++, node);
+
+            final char c = text.charAt(index);
+
+            int previous = NONE;
+            int child = firstChild[node];
+            while (child != NONE && labels[labelStart[child]] < c) {
+                previous = child;
+                child = nextSibling[child];
+            }
+
+            if (child == NONE || labels[labelStart[child]] != c) {
+                // nothing starts with this yet, so the rest of the text is a new edge
+                final int leaf = newNode();
+                labelStart[leaf] = appendLabel(text, index, length);
+                labelLength[leaf] = length - index;
+                candidate[leaf] = true;
+
+                nextSibling[leaf] = child;
+                if (previous == NONE) {
+                    firstChild[node] = leaf;
+                }
+                else {
+                    nextSibling[previous] = leaf;
+                }
+
+                path = push(path, depth++, leaf);
+                added(depth);
+                return true;
+            }
+
+            final int start = labelStart[child];
+            final int edgeLength = labelLength[child];
+
+            int matched = 1;
+            while (matched < edgeLength && index + matched < length && labels[start + matched] == text.charAt(index + matched)) {
+                matched++;
+            }
+
+            if (matched < edgeLength) {
+                split(child, matched);
+            }
+
+            node = child;
+            index += matched;
+        }
+
+        if (candidate[node]) {
+            return false;
+        }
+
+        candidate[node] = true;
+        path = push(path, depth++, node);
+        added(depth);
+        return true;
+    }
+
+    private static
+    int[] push(int[] path, final int depth, final int node) {
+        if (depth == path.length) {
+            path = Arrays.copyOf(path, depth << 1);
+        }
+        path[depth] = node;
+        return path;
+    }
+
+    private
+    void added(final int depth) {
+        for (int i = 0; i < depth; i++) {
+            count[path[i]]++;
+        }
+        size++;
+    }
+
+    /**
+     * Adds every candidate
+     */
+    public synchronized
+    void addAll(final Collection<? extends CharSequence> candidates) {
+        for (CharSequence text : candidates) {
+            add(text);
+        }
+    }
+
+    /**
+     * @return the number of candidates
+     */
+    public synchronized
+    int size() {
+        return size;
+    }
+
+    /**
+     * Finds the candidates that start with the prefix. They are added in (char) order, up to the limit.
+     *
+     * @return the number of candidates that start with the prefix (which can be more than were added)
+     */
+    public synchronized
+    int find(final CharSequence prefix, final List<CharSequence> candidates, final int limit) {
+        final StringBuilder path = new StringBuilder(prefix.length() + 32);
+        final int node = find(prefix, path);
+        if (node == NONE) {
+            return 0;
+        }
+
+        collect(node, path, candidates, candidates.size() + limit);
+        return count[node];
+    }
+
+    @Override
+    public synchronized
+    int complete(final String line, final int cursor, final Candidates candidates) {
+        int start = cursor;
+        while (start > 0 && !Character.isWhitespace(line.charAt(start - 1))) {
+            start--;
+        }
+
+        final StringBuilder path = new StringBuilder(cursor - start + 32);
+        final int node = find(line.substring(start, cursor), path);
+        if (node == NONE) {
+            return -1;
+        }
+
+        final int listed = collect(node, path, candidates);
+        if (listed < count[node]) {
+            // the rest are only counted, and they start with the same text as every candidate of the node
+            candidates.addUnlisted(count[node] - listed, commonPrefix(node, path));
+        }
+        return start;
+    }
+
+    /**
+     * Finds the node of the prefix
+     *
+     * @param path the text of the node is appended here (which starts with the prefix)
+     *
+     * @return the node, or NONE if no candidate starts with the prefix
+     */
+    private
+    int find(final CharSequence prefix, final StringBuilder path) {
+        final int length = prefix.length();
+        int node = ROOT;
+        int index = 0;
+
+        while (index < length) {
+            final char c = prefix.charAt(index);
+
+            int child = firstChild[node];
+            while (child != NONE && labels[labelStart[child]] < c) {
+                child = nextSibling[child];
+            }
+
+            if (child == NONE || labels[labelStart[child]] != c) {
+                return NONE;
+            }
+
+            // the prefix can end in the middle of the edge
+            final int start = labelStart[child];
+            final int edgeLength = labelLength[child];
+            final int compare = Math.min(edgeLength, length - index);
+            for (int i = 1; i < compare; i++) {
+                if (labels[start + i] != prefix.charAt(index + i)) {
+                    return NONE;
+                }
+            }
+
+            path.append(labels, start, edgeLength);
+            node = child;
+            index += edgeLength;
+        }
+
+        return node == ROOT && size == 0 ? NONE : node;
+    }
+
+    /**
+     * Adds the candidates of the node (in order), until the list has the limit
+     */
+    private
+    void collect(final int node, final StringBuilder path, final List<CharSequence> candidates, final int limit) {
+        if (candidate[node] && candidates.size() < limit) {
+            candidates.add(path.toString());
+        }
+
+        final int length = path.length();
+        for (int child = firstChild[node]; child != NONE && candidates.size() < limit; child = nextSibling[child]) {
+            path.append(labels, labelStart[child], labelLength[child]);
+            collect(child, path, candidates, limit);
+            path.setLength(length);
+        }
+    }
+
+    /**
+     * Adds the candidates of the node (in order), until the candidates are full
+     *
+     * @return the number of candidates that were added
+     */
+    private
+    int collect(final int node, final StringBuilder path, final Candidates candidates) {
+        int added = 0;
+        if (candidate[node]) {
+            added++;
+            if (!candidates.add(path.toString())) {
+                return added;
+            }
+        }
+
+        final int length = path.length();
+        for (int child = firstChild[node]; child != NONE && !candidates.isFull(); child = nextSibling[child]) {
+            path.append(labels, labelStart[child], labelLength[child]);
+            added += collect(child, path, candidates);
+            path.setLength(length);
+        }
+        return added;
+    }
+
+    /**
+     * @return the text that every candidate of the node starts with (the path is changed)
+     */
+    private
+    CharSequence commonPrefix(int node, final StringBuilder path) {
+        while (!candidate[node] && firstChild[node] != NONE && nextSibling[firstChild[node]] == NONE) {
+            node = firstChild[node];
+            path.append(labels, labelStart[node], labelLength[node]);
+        }
+        return path;
+    }
+
+    /**
+     * Splits the edge to the node in two. The node keeps the start of the label, and gets a single child with the rest of the label
+     * (which gets the children of the node). Both parts of the label stay where they are.
+     */
+    private
+    void split(final int node, final int at) {
+        final int suffix = newNode();
+        labelStart[suffix] = labelStart[node] + at;
+        labelLength[suffix] = labelLength[node] - at;
+        firstChild[suffix] = firstChild[node];
+        candidate[suffix] = candidate[node];
+        count[suffix] = count[node];
+
+        labelLength[node] = at;
+        firstChild[node] = suffix;
+        candidate[node] = false;
+    }
+
+    private
+    int newNode() {
+        if (nodeCount == firstChild.length) {
+            final int capacity = nodeCount << 1;
+            labelStart = Arrays.copyOf(labelStart, capacity);
+            labelLength = Arrays.copyOf(labelLength, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            candidate = Arrays.copyOf(candidate, capacity);
+            count = Arrays.copyOf(count, capacity);
+        }
+
+        final int node = nodeCount++;
+        count[node] = 0;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        return node;
+    }
+
+    /**
+     * @return where the text was added
+     */
+    private
+    int appendLabel(final CharSequence text, final int start, final int end) {
+        final int length = end - start;
+        if (labelsLength + length > labels.length) {
+            labels = Arrays.copyOf(labels, Math.max(labels.length << 1, labelsLength + length));
+        }
+
+        final int offset = labelsLength;
+        for (int i = start; i < end; i++) {
+            labels[labelsLength++] = text.charAt(i);
+        }
+        return offset;
+    }
+}
@@ -18,6 +18,9 @@ package dorkbox.console.input;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import dorkbox.util.FastThreadLocal;
 import dorkbox.bytes.ByteBuffer2;
@@ -27,10 +30,26 @@ public
 class UnsupportedTerminal extends Terminal {
 
     private static final char[] NEW_LINE;
+    private static final TerminalSize SIZE = new TerminalSize(0, 0);
     private static final Thread backgroundReaderThread;
 
     private static final Object lock = new Object[0];
-    private static String currentConsoleInput = null;
+
+    // the most recent lines, so that a line that arrives while nobody is waiting for it is not lost
+    private static final int MAX_QUEUED_LINES = 256;
+    private static final List<String> lines = new ArrayList<String>();
+
+    // the number of the first line in the queue (lines are numbered from when the reader thread started)
+    private static long firstLine = 0;
+
+    // every line before this one was returned to a reader. A thread that starts reading gets the lines from here.
+    private static long takenLines = 0;
+
+    // returned by waitForLine() when the waiting reader was released by close()
+    private static final String RELEASED = new String();
+
+    // incremented by close(), so that waiting readers know they were released
+    private static int releaseCount = 0;
 
 
 
@@ -49,15 +68,17 @@ class UnsupportedTerminal extends Terminal {
 
                 try {
                     while (!Thread.interrupted()) {
-                        currentConsoleInput = null;
-
                         String line = reader.readLine();
                         if (line == null) {
                             break;
                         }
 
                         synchronized (lock) {
-                            currentConsoleInput = line;
+                            lines.add(line);
+                            if (lines.size() > MAX_QUEUED_LINES) {
+                                lines.remove(0);
+                                firstLine++;
+                            }
                             lock.notifyAll();
                         }
                     }
@@ -78,6 +99,15 @@ class UnsupportedTerminal extends Terminal {
         }
     };
 
+    // the number of the next line that the thread reads, -1 before the first read
+    private final FastThreadLocal<long[]> nextLine = new FastThreadLocal<long[]>() {
+        @Override
+        public
+        long[] initialValue() {
+            return new long[] {-1L};
+        }
+    };
+
     private final FastThreadLocal<Integer> readCount = new FastThreadLocal<Integer>() {
         @Override
         public
@@ -107,44 +137,63 @@ class UnsupportedTerminal extends Terminal {
 
     @Override
     public final
-    int getWidth() {
-        return 0;
+    TerminalSize getSize() {
+        return SIZE;
     }
 
+    /**
+     * Reads single character input from the console. This is "faked" by reading a line
+     *
+     * @return -1 if no data or problems
+     */
     @Override
-    public final
-    int getHeight() {
-        return 0;
+    public
+    int read() {
+        return take(-1L);
     }
 
     /**
-     * Reads single character input from the console. This is "faked" by reading a line
+     * Reads single character input from the console, waiting at most for the specified time. This is "faked" by reading a line
+     *
+     * @return -1 if no data (before the timeout elapsed) or problems
+     */
+    @Override
+    public
+    int read(final long timeout, final TimeUnit unit) {
+        return take(Math.max(0L, unit.toNanos(timeout)));
+    }
+
+    /**
+     * Reads single character input from the console, if there is any. This does not block. This is "faked" by reading a line, so
+     * characters are only available once their entire line was entered.
      *
      * @return -1 if no data or problems
      */
     @Override
     public
-    int read() {
+    int tryRead() {
+        return take(0L);
+    }
+
+    /**
+     * @param timeoutNanos how long to wait for input. -1 to wait forever.
+     */
+    private
+    int take(final long timeoutNanos) {
         int position;
         // so, 'readCount' is REALLY the index at which we return letters (until the whole string is returned)
         ByteBuffer2 buffer = this.buffer.get();
-        buffer.clearSecure();
 
         // we have to wait for more data.
         if (this.readCount.get() == 0) {
-            synchronized (lock) {
-                try {
-                    lock.wait();
-                } catch (InterruptedException ignored) {
-                }
-            }
-
-            if (currentConsoleInput == null) {
+            String line = waitForLine(nextLine.get(), timeoutNanos);
+            if (line == null || line == RELEASED) {
                 return -1;
             }
 
+            buffer.clearSecure();
 
-            char[] chars = currentConsoleInput.toCharArray();
+            char[] chars = line.toCharArray();
             buffer.writeChars(chars);
             position = buffer.position();
             buffer.rewind();
@@ -154,14 +203,85 @@ class UnsupportedTerminal extends Terminal {
                 // only send a NEW LINE if it was the ONLY thing pressed (this is to MOST ACCURATELY simulate single char input
                 return '\n';
             }
-
-            buffer.rewind();
         }
 
         readCount.set(this.readCount.get() - 2); // 2 bytes per char in the stream
         return buffer.readChar();
     }
 
+    /**
+     * Returns the next line of the thread, and waits for the background thread to read it if it is not there yet.
+     *
+     * @param nextLine the number of the next line of the thread, which is incremented
+     * @param timeoutNanos how long to wait for input. -1 to wait forever.
+     *
+     * @return null if the timeout elapsed, or RELEASED if released by close() (or interrupted)
+     */
+    private static
+    String waitForLine(final long[] nextLine, final long timeoutNanos) {
+        synchronized (lock) {
+            final int released = releaseCount;
+            final long deadline = System.nanoTime() + timeoutNanos;
+
+            if (nextLine[0] < 0L) {
+                // the lines that nobody has taken yet are for this thread as well
+                nextLine[0] = takenLines;
+            }
+
+            while (true) {
+                // the lines that are no longer in the queue were lost
+                nextLine[0] = Math.max(nextLine[0], firstLine);
+
+                if (nextLine[0] < firstLine + lines.size()) {
+                    final String line = lines.get((int) (nextLine[0] - firstLine));
+                    nextLine[0]++;
+                    takenLines = Math.max(takenLines, nextLine[0]);
+                    return line;
+                }
+
+                if (released != releaseCount) {
+                    return RELEASED;
+                }
+
+                try {
+                    if (timeoutNanos < 0L) {
+                        lock.wait();
+                    }
+                    else {
+                        final long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0L) {
+                            return null;
+                        }
+
+                        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                    }
+                } catch (InterruptedException ignored) {
+                    return RELEASED;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads single character input from the console, as a unicode code point. This is "faked" by reading a line
+     *
+     * @return -1 if no data or problems
+     */
+    @Override
+    public
+    int readCodePoint() {
+        int read = read();
+
+        if (read != -1 && Character.isHighSurrogate((char) read) && this.readCount.get() > 0) {
+            int low = read();
+            if (Character.isLowSurrogate((char) low)) {
+                return Character.toCodePoint((char) read, (char) low);
+            }
+        }
+
+        return read;
+    }
+
     /**
      * Reads a line of characters from the console as a character array, defined as everything before the 'ENTER' key is pressed
      *
@@ -170,20 +290,36 @@ class UnsupportedTerminal extends Terminal {
     @Override
     public
     char[] readLineChars() {
+        return takeLine(-1L);
+    }
+
+    /**
+     * Reads a line of characters from the console as a character array, defined as everything before the 'ENTER' key is pressed, waiting
+     * at most for the specified time.
+     *
+     * @return null if the timeout elapsed, empty char[] if no data
+     */
+    @Override
+    public
+    char[] readLineChars(final long timeout, final TimeUnit unit) {
+        return takeLine(Math.max(0L, unit.toNanos(timeout)));
+    }
+
+    /**
+     * @return null if the timeout elapsed, empty char[] if released by close()
+     */
+    private
+    char[] takeLine(final long timeoutNanos) {
         // we have to wait for more data.
-        synchronized (lock) {
-            try {
-                lock.wait();
-            } catch (InterruptedException ignored) {
-            }
+        String line = waitForLine(nextLine.get(), timeoutNanos);
+        if (line == null) {
+            return null;
         }
-
-        if (currentConsoleInput == null) {
+        if (line == RELEASED) {
             return EMPTY_LINE;
         }
 
-
-        char[] chars = currentConsoleInput.toCharArray();
+        char[] chars = line.toCharArray();
         int length = chars.length;
 
         if (length == 0) {
@@ -198,6 +334,7 @@ class UnsupportedTerminal extends Terminal {
     public
     void close() {
         synchronized (lock) {
+            releaseCount++;
             lock.notifyAll();
         }
     }
@@ -48,6 +48,22 @@ class WindowsTerminal extends SupportedTerminal {
      */
     private static final int PROCESSED_INPUT = 1;
 
+    // the virtual key codes of the keys that do not have a character, but are used to edit a line
+    private static final int VK_END = 0x23;
+    private static final int VK_HOME = 0x24;
+    private static final int VK_LEFT = 0x25;
+    private static final int VK_UP = 0x26;
+    private static final int VK_RIGHT = 0x27;
+    private static final int VK_DOWN = 0x28;
+    private static final int VK_DELETE = 0x2E;
+
+    private static final int RIGHT_CTRL_PRESSED = 0x0004;
+    private static final int LEFT_CTRL_PRESSED = 0x0008;
+
+    // flags the keys (without a character) that are returned by readInput()
+    private static final int KEY_FLAG = 0x40000000;
+    private static final int KEY_CTRL_FLAG = 0x10000;
+
     // output stream for "echo" to goto
     private static final PrintStream OUT = System.out;
 
@@ -99,19 +115,13 @@ class WindowsTerminal extends SupportedTerminal {
     }
 
     @Override
-    public final
-    int getWidth() {
+    protected final
+    TerminalSize querySize() {
         GetConsoleScreenBufferInfo(outputConsole, info);
-        int w = info.window.width() + 1;
-        return w < 1 ? DEFAULT_WIDTH : w;
-    }
 
-    @Override
-    public final
-    int getHeight() {
-        GetConsoleScreenBufferInfo(outputConsole, info);
+        int w = info.window.width() + 1;
         int h = info.window.height() + 1;
-        return h < 1 ? DEFAULT_HEIGHT : h;
+        return new TerminalSize(w < 1 ? DEFAULT_WIDTH : w, h < 1 ? DEFAULT_HEIGHT : h);
     }
 
     @Override
@@ -141,22 +151,88 @@ class WindowsTerminal extends SupportedTerminal {
 
     @Override
     protected final
-    int doRead() {
+    int doRead(final int[] buffer) {
         int input = readInput();
 
+        if ((input & KEY_FLAG) != 0) {
+            return keySequence(input, buffer);
+        }
+
+        // characters outside of the BMP arrive as a surrogate pair (as two key events)
+        if (Character.isHighSurrogate((char) input)) {
+            int low = readInput();
+            if (Character.isLowSurrogate((char) low)) {
+                input = Character.toCodePoint((char) input, (char) low);
+            }
+            else {
+                // an unpaired surrogate is not a character, and only the second key is kept
+                input = low;
+            }
+        }
+
         if (echoEnabled) {
-            char asChar = (char) input;
-            if (asChar == '\n') {
+            if (input == '\n') {
                 OUT.println();
             }
             else {
-                OUT.write(asChar);
+                OUT.print(Character.toChars(input));
             }
             // have to flush, otherwise we'll never see the chars on screen
             OUT.flush();
         }
 
-        return input;
+        buffer[0] = input;
+        return 1;
+    }
+
+    /**
+     * Converts a key (that does not have a character) to the escape sequence that a posix terminal sends for that key.
+     *
+     * @return the number of characters in the sequence
+     */
+    private static
+    int keySequence(final int key, final int[] buffer) {
+        final int virtualKeyCode = key & 0xFFFF;
+
+        buffer[0] = 27;
+        buffer[1] = '[';
+
+        if (virtualKeyCode == VK_DELETE) {
+            buffer[2] = '3';
+            buffer[3] = '~';
+            return 4;
+        }
+
+        int count = 2;
+        if ((key & KEY_CTRL_FLAG) != 0) {
+            // ctrl + key
+            buffer[count++] = '1';
+            buffer[count++] = ';';
+            buffer[count++] = '5';
+        }
+
+        switch (virtualKeyCode) {
+            case VK_END:
+                buffer[count++] = 'F';
+                break;
+            case VK_HOME:
+                buffer[count++] = 'H';
+                break;
+            case VK_LEFT:
+                buffer[count++] = 'D';
+                break;
+            case VK_UP:
+                buffer[count++] = 'A';
+                break;
+            case VK_RIGHT:
+                buffer[count++] = 'C';
+                break;
+            case VK_DOWN:
+                buffer[count++] = 'B';
+                break;
+        }
+
+        return count;
     }
 
     private
@@ -183,6 +259,16 @@ class WindowsTerminal extends SupportedTerminal {
 
                             return uChar;
                         }
+
+                        // these keys are only sent (as escape sequences) to the line editor, otherwise they are ignored
+                        final int virtualKeyCode = keyEvent.virtualKeyCode;
+                        if (editsLines() && ((virtualKeyCode >= VK_END && virtualKeyCode <= VK_DOWN) || virtualKeyCode == VK_DELETE)) {
+                            int key = KEY_FLAG | virtualKeyCode;
+                            if ((keyEvent.controlKeyState & (LEFT_CTRL_PRESSED | RIGHT_CTRL_PRESSED)) != 0) {
+                                key |= KEY_CTRL_FLAG;
+                            }
+                            return key;
+                        }
                     }
                 }
             }
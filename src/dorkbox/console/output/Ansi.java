@@ -30,15 +30,14 @@
  */
 package dorkbox.console.output;
 
-import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_RESET;
-
-import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 
 import dorkbox.console.Console;
+import dorkbox.console.util.DisplayWidth;
+import dorkbox.util.FastThreadLocal;
 import dorkbox.jna.linux.CLibraryPosix;
 import dorkbox.os.OS;
 
@@ -59,6 +58,9 @@ class Ansi {
     private static final PrintStream original_out = System.out;
     private static final PrintStream original_err = System.err;
 
+    // only used when the output is asynchronous. [0] is STDOUT, [1] is STDERR
+    private static final AsyncOutputStream[] asyncStreams = new AsyncOutputStream[2];
+
     public static final PrintStream out = createPrintStream(original_out, 1); // STDOUT_FILENO;
     public static final PrintStream err = createPrintStream(original_err, 2); // STDERR_FILENO
 
@@ -75,6 +77,16 @@ class Ansi {
             public
             void run() {
                 // called when the JVM is shutting down.
+                // the asynchronous output (if any) is written first, while the streams are still ours
+                for (AsyncOutputStream asyncStream : asyncStreams) {
+                    if (asyncStream != null) {
+                        try {
+                            asyncStream.flush();
+                        } catch (IOException ignored) {
+                        }
+                    }
+                }
+
                 restoreSystemStreams();
             }
         };
@@ -84,8 +96,38 @@ class Ansi {
 
     private static final String NEW_LINE = System.getProperty("line.separator");
 
-    private final StringBuilder builder;
-    private final ArrayList<Integer> attributeOptions = new ArrayList<Integer>(8);
+    private final AnsiSink sink;
+
+    // the pooled Ansi objects release their memory when cleared, if they have grown larger than this
+    private static final int MAX_POOLED_CAPACITY = 16 * 1024;
+    private static final int POOLED_CAPACITY = 256;
+
+    private static final FastThreadLocal<Ansi> pool = new FastThreadLocal<Ansi>() {
+        @Override
+        public
+        Ansi initialValue() {
+            return new Ansi(new StringBuilder(POOLED_CAPACITY));
+        }
+    };
+
+    // SGR (text attribute) options that have not been written yet. They are combined into a single escape sequence when written.
+    private static final int MAX_ATTRIBUTE_OPTIONS = 16;
+    private final int[] attributeOptions = new int[MAX_ATTRIBUTE_OPTIONS];
+    private int attributeCount = 0;
+
+    // the number of console columns used by the text written so far. When the text can be read again (ie: from a StringBuilder), it is
+    // measured when the width is requested (and only the text written since then). Otherwise, it is measured as it is written.
+    private final boolean countWidth;
+    private int displayWidth = 0;
+    private int measuredLength = 0;
+
+    // when the style is tracked, this is the style that the written text has (null when it is not tracked)
+    private AnsiStyle trackedStyle = null;
+    private AnsiStyle targetStyle = null;
+    private int[] deltaOptions = null;
+
+    // true when the written text changed the style in a way that is not tracked. The next attributes are then written as-is.
+    private boolean styleUnknown = false;
 
 
     /**
@@ -114,6 +156,54 @@ class Ansi {
         return new Ansi(builder);
     }
 
+    /**
+     * Returns the (empty) Ansi object for the current thread, so that formatting text does not allocate a new Ansi object each time.
+     * <p>
+     * The same object is returned (after it is cleared) by the next call on this thread, so use the text before then, and never
+     * keep a reference to it or give it to another thread.
+     */
+    public static
+    Ansi pooled() {
+        Ansi ansi = pool.get();
+        ansi.attributeCount = 0;
+        ansi.displayWidth = 0;
+        ansi.measuredLength = 0;
+        ansi.trackedStyle = null;
+        ((AnsiSink.StringBuilderSink) ansi.sink).clear(MAX_POOLED_CAPACITY);
+        return ansi;
+    }
+
+    /**
+     * Creates a new Ansi object that writes to the specified Appendable (ie: a Writer).
+     * <p>
+     * IOExceptions from the Appendable are rethrown as RuntimeExceptions.
+     */
+    public static
+    Ansi ansi(Appendable appendable) {
+        return new Ansi(AnsiSink.of(appendable));
+    }
+
+    /**
+     * Creates a new Ansi object that writes (UTF-8 encoded) bytes directly into the specified ByteBuffer, starting at its position.
+     * <p>
+     * A BufferOverflowException is thrown if the ByteBuffer is too small.
+     */
+    public static
+    Ansi ansi(ByteBuffer buffer) {
+        return new Ansi(AnsiSink.of(buffer));
+    }
+
+    /**
+     * Creates a new Ansi object that writes (UTF-8 encoded) bytes directly to the specified OutputStream. The bytes are buffered, and
+     * {@link #flush()} must be called to write them to the OutputStream.
+     * <p>
+     * IOExceptions from the OutputStream are rethrown as RuntimeExceptions.
+     */
+    public static
+    Ansi ansi(OutputStream outputStream) {
+        return new Ansi(AnsiSink.of(outputStream));
+    }
+
     /**
      * Creates a new Ansi object of the specified length
      */
@@ -139,12 +229,19 @@ class Ansi {
     }
 
     /**
-     * Creates a new Ansi object from the parent.
+     * Creates a new Ansi object from the parent. The text of the parent is copied when it writes to a StringBuilder.
      */
     public
     Ansi(Ansi parent) {
-        this(new StringBuilder(parent.builder));
-        attributeOptions.addAll(parent.attributeOptions);
+        this(parent.copyOutput());
+        System.arraycopy(parent.attributeOptions, 0, attributeOptions, 0, parent.attributeCount);
+        attributeCount = parent.attributeCount;
+
+        if (parent.trackedStyle != null) {
+            trackStyle(true);
+            trackedStyle.set(parent.trackedStyle);
+            styleUnknown = parent.styleUnknown;
+        }
     }
 
     /**
@@ -161,7 +258,13 @@ class Ansi {
      */
     public
     Ansi(StringBuilder builder) {
-        this.builder = builder;
+        this(AnsiSink.of(builder));
+    }
+
+    private
+    Ansi(final AnsiSink sink) {
+        this.sink = sink;
+        this.countWidth = sink.text() == null;
     }
 
     /**
@@ -174,19 +277,19 @@ class Ansi {
     Ansi fg(Color color) {
         if (color.isNormal()) {
             if (color != Color.DEFAULT) {
-                attributeOptions.add(color.fg());
+                addAttribute(color.fg());
             }
             else {
-                attributeOptions.add(AnsiOutputStream.ATTRIBUTE_DEFAULT_FG);
+                addAttribute(AnsiOutputStream.ATTRIBUTE_DEFAULT_FG);
             }
         }
         else {
             if (color != Color.BRIGHT_DEFAULT) {
-                attributeOptions.add(color.fgBright());
+                addAttribute(color.fgBright());
             }
             else {
-                attributeOptions.add(AnsiOutputStream.ATTRIBUTE_DEFAULT_FG);
-                attributeOptions.add(AnsiOutputStream.ATTRIBUTE_BOLD);
+                addAttribute(AnsiOutputStream.ATTRIBUTE_DEFAULT_FG);
+                addAttribute(AnsiOutputStream.ATTRIBUTE_BOLD);
             }
         }
 
@@ -203,19 +306,19 @@ class Ansi {
     Ansi bg(Color color) {
         if (color.isNormal()) {
             if (color != Color.DEFAULT) {
-                attributeOptions.add(color.bg());
+                addAttribute(color.bg());
             }
             else {
-                attributeOptions.add(AnsiOutputStream.ATTRIBUTE_DEFAULT_BG);
+                addAttribute(AnsiOutputStream.ATTRIBUTE_DEFAULT_BG);
             }
         }
         else {
             if (color != Color.BRIGHT_DEFAULT) {
-                attributeOptions.add(color.bgBright());
+                addAttribute(color.bgBright());
             }
             else {
-                attributeOptions.add(AnsiOutputStream.ATTRIBUTE_DEFAULT_BG);
-                attributeOptions.add(AnsiOutputStream.ATTRIBUTE_BOLD);
+                addAttribute(AnsiOutputStream.ATTRIBUTE_DEFAULT_BG);
+                addAttribute(AnsiOutputStream.ATTRIBUTE_BOLD);
             }
         }
         return this;
@@ -614,7 +717,7 @@ class Ansi {
      */
     public
     Ansi a(Attribute attribute) {
-        attributeOptions.add(attribute.value());
+        addAttribute(attribute.value());
         return this;
     }
 
@@ -627,7 +730,10 @@ class Ansi {
     public
     Ansi a(final String value) {
         flushAttributes();
-        builder.append(value);
+        if (countWidth) {
+            displayWidth += textWidth(value);
+        }
+        sink.append(value);
         return this;
     }
 
@@ -640,7 +746,10 @@ class Ansi {
     public
     Ansi a(final boolean value) {
         flushAttributes();
-        builder.append(value);
+        if (countWidth) {
+            displayWidth += value ? 4 : 5;
+        }
+        sink.append(String.valueOf(value));
         return this;
     }
 
@@ -653,7 +762,10 @@ class Ansi {
     public
     Ansi a(final char value) {
         flushAttributes();
-        builder.append(value);
+        if (countWidth) {
+            displayWidth += DisplayWidth.width((int) value);
+        }
+        sink.append(value);
         return this;
     }
 
@@ -666,7 +778,10 @@ class Ansi {
     public
     Ansi a(final char[] valueArray, final int offset, final int length) {
         flushAttributes();
-        builder.append(valueArray, offset, length);
+        if (countWidth) {
+            displayWidth += DisplayWidth.width(valueArray, offset, length);
+        }
+        sink.append(valueArray, offset, length);
         return this;
     }
 
@@ -679,7 +794,10 @@ class Ansi {
     public
     Ansi a(final char[] value) {
         flushAttributes();
-        builder.append(value);
+        if (countWidth) {
+            displayWidth += DisplayWidth.width(value, 0, value.length);
+        }
+        sink.append(value);
         return this;
     }
 
@@ -692,7 +810,10 @@ class Ansi {
     public
     Ansi a(final CharSequence value, final int start, final int end) {
         flushAttributes();
-        builder.append(value, start, end);
+        if (countWidth) {
+            displayWidth += AnsiString.displayWidth(value, start, end);
+        }
+        sink.append(value, start, end);
         return this;
     }
 
@@ -705,7 +826,10 @@ class Ansi {
     public
     Ansi a(final CharSequence value) {
         flushAttributes();
-        builder.append(value);
+        if (countWidth) {
+            displayWidth += textWidth(value);
+        }
+        sink.append(value);
         return this;
     }
 
@@ -718,7 +842,11 @@ class Ansi {
     public
     Ansi a(final double value) {
         flushAttributes();
-        builder.append(value);
+        String text = String.valueOf(value);
+        if (countWidth) {
+            displayWidth += textWidth(text);
+        }
+        sink.append(text);
         return this;
     }
 
@@ -731,7 +859,11 @@ class Ansi {
     public
     Ansi a(final float value) {
         flushAttributes();
-        builder.append(value);
+        String text = String.valueOf(value);
+        if (countWidth) {
+            displayWidth += textWidth(text);
+        }
+        sink.append(text);
         return this;
     }
 
@@ -744,7 +876,10 @@ class Ansi {
     public
     Ansi a(final int value) {
         flushAttributes();
-        builder.append(value);
+        if (countWidth) {
+            displayWidth += numberWidth(value);
+        }
+        sink.append(value);
         return this;
     }
 
@@ -757,7 +892,10 @@ class Ansi {
     public
     Ansi a(final long value) {
         flushAttributes();
-        builder.append(value);
+        if (countWidth) {
+            displayWidth += numberWidth(value);
+        }
+        sink.append(value);
         return this;
     }
 
@@ -770,7 +908,11 @@ class Ansi {
     public
     Ansi a(final Object value) {
         flushAttributes();
-        builder.append(value);
+        String text = String.valueOf(value);
+        if (countWidth) {
+            displayWidth += textWidth(text);
+        }
+        sink.append(text);
         return this;
     }
 
@@ -783,7 +925,10 @@ class Ansi {
     public
     Ansi a(final StringBuilder value) {
         flushAttributes();
-        builder.append(value);
+        if (countWidth) {
+            displayWidth += textWidth(value);
+        }
+        sink.append(value);
         return this;
     }
 
@@ -799,7 +944,10 @@ class Ansi {
     public
     Ansi a(final StringBuffer value) {
         flushAttributes();
-        builder.append(value);
+        if (countWidth) {
+            displayWidth += textWidth(value);
+        }
+        sink.append(value);
         return this;
     }
 
@@ -811,7 +959,7 @@ class Ansi {
     public
     Ansi newline() {
         flushAttributes();
-        builder.append(NEW_LINE);
+        sink.append(NEW_LINE);
         return this;
     }
 
@@ -825,17 +973,22 @@ class Ansi {
     public
     Ansi format(final String pattern, final Object... args) {
         flushAttributes();
-        builder.append(String.format(pattern, args));
+        String text = String.format(pattern, args);
+        if (countWidth) {
+            displayWidth += textWidth(text);
+        }
+        sink.append(text);
         return this;
     }
 
     /**
-     * Uses the {@link AnsiRenderer} to generate the ANSI escape sequences for the supplied text.
+     * Uses the {@link AnsiRenderer} to generate the ANSI escape sequences for the supplied text. The text is parsed every time (and is
+     * not cached, because it is often dynamic), markup that is rendered often should be compiled once with
+     * {@link AnsiRenderer#compile(String)}.
      */
     public
     Ansi render(final String text) {
-        a(AnsiRenderer.render(text));
-        return this;
+        return AnsiRenderer.parse(text).appendTo(this);
     }
 
     /**
@@ -845,76 +998,275 @@ class Ansi {
     public
     Ansi render(final String text, final Object... args) {
         a(String.format(AnsiRenderer.render(text), args));
+        styleUnknown = true;
         return this;
     }
 
+    /**
+     * Enables (or disables) tracking the style (the colors and attributes) of the text. When the style is tracked, only the attributes
+     * that actually change the style are written, and nothing is written when the style does not change. For example,
+     * {@code fg(RED).a("x").fg(RED).a("y")} only writes the color once, and a reset is only written if the style is not the default.
+     * <p>
+     * The text is assumed to have the default style when tracking is enabled. Escape sequences that are part of the text (instead of
+     * added with the methods of this class) are not tracked, however text from {@link #render(String, Object...)} is handled by
+     * writing the next attributes as-is.
+     *
+     * @return this
+     */
+    public
+    Ansi trackStyle(final boolean enabled) {
+        flushAttributes();
+
+        if (enabled) {
+            if (trackedStyle == null) {
+                trackedStyle = new AnsiStyle();
+                targetStyle = new AnsiStyle();
+                deltaOptions = new int[AnsiStyle.MAX_DELTA_OPTIONS];
+            }
+            else {
+                trackedStyle.reset();
+            }
+        }
+        else {
+            trackedStyle = null;
+        }
+
+        styleUnknown = false;
+        return this;
+    }
+
+    /**
+     * Discards the text (and any attributes not written yet), but keeps the capacity, so this object can be used again.
+     * <p>
+     * This is not {@link #reset()}, which resets the attributes of the console. Text that was already written to an Appendable,
+     * ByteBuffer or OutputStream cannot be discarded, only what is buffered.
+     *
+     * @return this
+     */
+    public
+    Ansi clear() {
+        attributeCount = 0;
+        displayWidth = 0;
+        measuredLength = 0;
+        sink.clear();
+
+        if (trackedStyle != null) {
+            trackedStyle.reset();
+            styleUnknown = false;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of columns that the text written so far occupies in the console, so that it can be aligned without measuring
+     * it again. Wide (ie: East Asian) characters use 2 columns, and combining marks, line separators and escape sequences use none.
+     *
+     * @see DisplayWidth
+     */
+    public
+    int displayWidth() {
+        final CharSequence text = sink.text();
+
+        if (text != null) {
+            final int length = text.length();
+
+            if (length < measuredLength) {
+                // the StringBuilder was changed by something else
+                displayWidth = 0;
+                measuredLength = 0;
+            }
+
+            displayWidth += AnsiString.displayWidth(text, measuredLength, length);
+            measuredLength = length;
+        }
+
+        return displayWidth;
+    }
+
+    /**
+     * Writes anything that has not been written yet (ie: attributes without any text after them, or buffered bytes) to the destination,
+     * and flushes the destination if it is an OutputStream (or Flushable).
+     *
+     * @return this
+     */
+    public
+    Ansi flush() {
+        flushAttributes();
+        sink.flush();
+        return this;
+    }
+
+    /**
+     * @return the ANSI text. If this writes to an Appendable, ByteBuffer or OutputStream, this is the toString() of the destination.
+     */
     @Override
     public String toString() {
         flushAttributes();
-        return builder.toString();
+        return sink.toString();
+    }
+
+    /**
+     * @return a copy of the ANSI text written so far, or an empty builder if it was written somewhere that it cannot be copied from
+     */
+    private
+    StringBuilder copyOutput() {
+        StringBuilder copy = sink.copy();
+        if (copy == null) {
+            return new StringBuilder();
+        }
+        return copy;
     }
 
     ///////////////////////////////////////////////////////////////////
     // Private Helper Methods
     ///////////////////////////////////////////////////////////////////
-    private static final char FIRST_ESC_CHAR = 27;
-    private static final char SECOND_ESC_CHAR = '[';
+    private static final char FIRST_ESC_CHAR = EscapeCodes.FIRST_ESC_CHAR;
+    private static final char SECOND_ESC_CHAR = EscapeCodes.SECOND_ESC_CHAR;
+
+    private static
+    int textWidth(final CharSequence value) {
+        if (value == null) {
+            // written as "null"
+            return 4;
+        }
+        return AnsiString.displayWidth(value, 0, value.length());
+    }
+
+    private static
+    int numberWidth(long value) {
+        int width = value < 0 ? 2 : 1;
+        while (value >= 10 || value <= -10) {
+            value /= 10;
+            width++;
+        }
+        return width;
+    }
 
     private
     Ansi appendEscapeSequence(final char command) {
         flushAttributes();
-        builder.append(FIRST_ESC_CHAR);
-        builder.append(SECOND_ESC_CHAR);
-        builder.append(command);
+        sink.append(FIRST_ESC_CHAR);
+        sink.append(SECOND_ESC_CHAR);
+        sink.append(command);
         return this;
     }
 
     private
     Ansi appendEscapeSequence(final char command, final int option) {
         flushAttributes();
-        builder.append(FIRST_ESC_CHAR);
-        builder.append(SECOND_ESC_CHAR);
-        builder.append(option);
-        builder.append(command);
+        sink.append(FIRST_ESC_CHAR);
+        sink.append(SECOND_ESC_CHAR);
+        appendOption(option);
+        sink.append(command);
         return this;
     }
 
     private
-    Ansi appendEscapeSequence(final char command, final Object... options) {
+    Ansi appendEscapeSequence(final char command, final int option1, final int option2) {
         flushAttributes();
-        return _appendEscapeSequence(command, options);
+        sink.append(FIRST_ESC_CHAR);
+        sink.append(SECOND_ESC_CHAR);
+        appendOption(option1);
+        sink.append(';');
+        appendOption(option2);
+        sink.append(command);
+        return this;
+    }
+
+    /**
+     * Queues a SGR (text attribute) option, which is written (combined with the other queued options) before the next text or escape
+     * sequence.
+     */
+    private
+    void addAttribute(final int option) {
+        if (attributeCount == MAX_ATTRIBUTE_OPTIONS) {
+            // more options than fit in a single escape sequence, so they are split across two
+            flushAttributes();
+        }
+        attributeOptions[attributeCount++] = option;
     }
 
     private
     void flushAttributes() {
-        if( attributeOptions.isEmpty() ) {
+        final int count = attributeCount;
+        if (count == 0) {
+            return;
+        }
+
+        attributeCount = 0;
+
+        final AnsiStyle tracked = trackedStyle;
+        if (tracked == null) {
+            writeAttributes(attributeOptions, count);
             return;
         }
-        if (attributeOptions.size() == 1 && attributeOptions.get(0) == ATTRIBUTE_RESET) {
-            builder.append(FIRST_ESC_CHAR);
-            builder.append(SECOND_ESC_CHAR);
-            builder.append(AnsiOutputStream.TEXT_ATTRIBUTE);
-        } else {
-            _appendEscapeSequence(AnsiOutputStream.TEXT_ATTRIBUTE, attributeOptions.toArray());
+
+        final AnsiStyle target = targetStyle;
+        target.set(tracked);
+
+        boolean known = !styleUnknown;
+        for (int i = 0; i < count; i++) {
+            final int option = attributeOptions[i];
+
+            if (!target.apply(option)) {
+                known = false;
+            }
+            else if (option == AnsiOutputStream.ATTRIBUTE_RESET) {
+                // everything before a reset does not matter
+                known = true;
+            }
+        }
+
+        if (known && !styleUnknown) {
+            // only the difference is written, which is nothing when the style did not change
+            final int deltaCount = tracked.delta(target, deltaOptions);
+            if (deltaCount > 0) {
+                writeAttributes(deltaOptions, deltaCount);
+            }
         }
-        attributeOptions.clear();
+        else {
+            writeAttributes(attributeOptions, count);
+        }
+
+        tracked.set(target);
+        styleUnknown = !known;
     }
 
     private
-    Ansi _appendEscapeSequence(final char command, final Object... options) {
-        builder.append(FIRST_ESC_CHAR);
-        builder.append(SECOND_ESC_CHAR);
-        int size = options.length;
-        for (int i = 0; i < size; i++) {
-            if (i != 0) {
-                builder.append(';');
-            }
-            if (options[i] != null) {
-                builder.append(options[i]);
+    void writeAttributes(final int[] options, final int count) {
+        // the complete escape sequence is almost always precomputed (or cached), and is written with a single copy
+        final EscapeCodes.Sequence sequence = EscapeCodes.sequence(options, count);
+
+        if (sequence != null) {
+            sink.append(sequence);
+        }
+        else {
+            sink.append(FIRST_ESC_CHAR);
+            sink.append(SECOND_ESC_CHAR);
+
+            appendOption(options[0]);
+            for (int i = 1; i < count; i++) {
+                sink.append(';');
+                appendOption(options[i]);
             }
+
+            sink.append(AnsiOutputStream.TEXT_ATTRIBUTE);
+        }
+    }
+
+    /**
+     * Writes the digits of an escape sequence option. Known options are precomputed, and are written with a single copy.
+     */
+    private
+    void appendOption(final int option) {
+        final char[] chars = EscapeCodes.optionChars(option);
+
+        if (chars != null) {
+            sink.append(chars);
+        }
+        else {
+            sink.append(option);
         }
-        builder.append(command);
-        return this;
     }
 
     private static boolean isXterm() {
@@ -925,10 +1277,28 @@ class Ansi {
     private static
     PrintStream createPrintStream(final OutputStream stream, final int fileno) {
         String type = fileno == 1 ? "OUT" : "ERR";
+        OutputStream outputStream = createOutputStream(stream, fileno, type);
+
+        if (Console.ENABLE_ASYNC_OUTPUT) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Created asynchronous ANSI PrintStream for {}", type);
+            }
+
+            AsyncOutputStream asyncStream = new AsyncOutputStream(outputStream, Console.ASYNC_OUTPUT_BUFFER_SIZE,
+                                                                  Console.ASYNC_OUTPUT_OVERFLOW, type);
+            asyncStreams[fileno - 1] = asyncStream;
+            outputStream = asyncStream;
+        }
+
+        return new PrintStream(outputStream);
+    }
+
+    private static
+    OutputStream createOutputStream(final OutputStream stream, final int fileno, final String type) {
 
         if (!Console.ENABLE_ANSI) {
             // Use the ANSIOutputStream to strip out the ANSI escape sequences.
-            return getStripPrintStream(stream, type);
+            return getStripOutputStream(stream, type);
         }
 
         // intellij idea console supports ANSI colors... but NOT REALLY! (they are off)
@@ -938,7 +1308,7 @@ class Ansi {
             ) {
 
             // Use the ANSIOutputStream to strip out the ANSI escape sequences.
-            return getStripPrintStream(stream, type);
+            return getStripOutputStream(stream, type);
         }
 
 
@@ -947,18 +1317,18 @@ class Ansi {
                 // check if windows10+ (which natively supports ANSI)
                 if (System.getProperty("os.version").startsWith("10.")) {
                     // Just wrap it up so that when we get closed, we reset the attributes.
-                    return defaultPrintStream(stream, type);
+                    return defaultOutputStream(stream, type);
                 }
 
                 // On windows we know the console does not interpret ANSI codes..
                 try {
-                    PrintStream printStream = new PrintStream(new WindowsAnsiOutputStream(stream, fileno));
+                    OutputStream outputStream = new WindowsAnsiOutputStream(stream, fileno);
 
                     if (logger.isDebugEnabled()) {
                         logger.debug("Created a Windows ANSI PrintStream for {}", type);
                     }
 
-                    return printStream;
+                    return outputStream;
                 } catch (Throwable ignore) {
                     // this happens when JNA is not in the path.. or
                     // this happens when the stdout is being redirected to a file.
@@ -967,14 +1337,14 @@ class Ansi {
 
                 // Use the ANSIOutputStream to strip out the ANSI escape sequences.
                 if (!Console.FORCE_ENABLE_ANSI) {
-                    return getStripPrintStream(stream, type);
+                    return getStripOutputStream(stream, type);
                 }
             } else {
                 // We must be on some unix variant..
                 try {
                     // If we can detect that stdout is not a tty.. then setup to strip the ANSI sequences..
                     if (!Console.FORCE_ENABLE_ANSI && CLibraryPosix.isatty(fileno) == 0) {
-                        return getStripPrintStream(stream, type);
+                        return getStripOutputStream(stream, type);
                     }
                 } catch (Throwable ignore) {
                     // These errors happen if the JNI lib is not available for your platform.
@@ -984,32 +1354,24 @@ class Ansi {
 
         // By default we assume the terminal can handle ANSI codes.
         // Just wrap it up so that when we get closed, we reset the attributes.
-        return defaultPrintStream(stream, type);
+        return defaultOutputStream(stream, type);
     }
 
     private static
-    PrintStream getStripPrintStream(final OutputStream stream, final String type) {
+    OutputStream getStripOutputStream(final OutputStream stream, final String type) {
         if (logger.isDebugEnabled()) {
             logger.debug("Created a strip-ANSI PrintStream for {}", type);
         }
 
-        return new PrintStream(new AnsiOutputStream(stream));
+        return new AnsiOutputStream(stream);
     }
 
     private static
-    PrintStream defaultPrintStream(final OutputStream stream, final String type) {
+    OutputStream defaultOutputStream(final OutputStream stream, final String type) {
         if (logger.isDebugEnabled()) {
             logger.debug("Created ANSI PrintStream for {}", type);
         }
 
-        return new PrintStream(new FilterOutputStream(stream) {
-            @Override
-            public
-            void close() throws IOException {
-                write(AnsiOutputStream.RESET_CODE);
-                flush();
-                super.close();
-            }
-        });
+        return new ResetOnCloseOutputStream(stream);
     }
 }
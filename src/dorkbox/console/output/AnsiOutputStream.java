@@ -112,6 +112,9 @@ class AnsiOutputStream extends FilterOutputStream {
     static final int ATTRIBUTE_DEFAULT_FG = 39; //  Default text color (foreground)
     static final int ATTRIBUTE_DEFAULT_BG = 49; //  Default background color
 
+    static final int ATTRIBUTE_EXTENDED_FG = 38; // Extended text color, followed by 5;n (256 colors) or 2;r;g;b (truecolor)
+    static final int ATTRIBUTE_EXTENDED_BG = 48; // Extended background color, followed by 5;n (256 colors) or 2;r;g;b (truecolor)
+
 
     // for Erase Screen/Line
     static final int ERASE_TO_END = 0;
@@ -157,12 +160,82 @@ class AnsiOutputStream extends FilterOutputStream {
     private byte buffer[] = new byte[MAX_ESCAPE_SEQUENCE_LENGTH];
     private int pos = 0;
     private int startOfValue;
-    private final ArrayList<Object> options = new ArrayList<Object>();
+
+    // the parsed options are kept as primitives, so that parsing an escape sequence does not create any garbage.
+    // Every option uses at least one byte of the escape sequence buffer, so these can never overflow.
+    private static final byte OPTION_EMPTY = 0;
+    private static final byte OPTION_INT = 1;
+    private static final byte OPTION_STRING = 2; // the value is the start of the string in the buffer
+    private static final byte OPTION_QUESTION = 3;
+    private static final byte OPTION_EQUALS = 4;
+
+    private final byte[] optionTypes = new byte[MAX_ESCAPE_SEQUENCE_LENGTH];
+    private final int[] optionValues = new int[MAX_ESCAPE_SEQUENCE_LENGTH];
+    private final int[] optionLengths = new int[MAX_ESCAPE_SEQUENCE_LENGTH];
+    private int optionCount = 0;
+
+    // the value of the int option that is currently being parsed
+    private int intValue;
 
 
     @Override
     public
     void write(int data) throws IOException {
+        process(data);
+    }
+
+    /**
+     * Writes the plain runs of text (everything outside an escape sequence) with a single write to the underlying stream, and only
+     * sends the bytes that are part of an escape sequence through the escape state machine.
+     */
+    @Override
+    public
+    void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        if ((offset | length | (bytes.length - (length + offset)) | (offset + length)) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        final int end = offset + length;
+        int i = offset;
+
+        while (i < end) {
+            if (state == LOOKING_FOR_FIRST_ESC_CHAR) {
+                int start = i;
+                while (i < end && bytes[i] != FIRST_ESC_CHAR) {
+                    i++;
+                }
+
+                if (i > start) {
+                    writeText(bytes, start, i - start);
+                }
+
+                if (i == end) {
+                    break;
+                }
+            }
+
+            process(bytes[i++]);
+        }
+    }
+
+    /**
+     * Writes a single byte of text (that is not part of an escape sequence) to the underlying stream.
+     */
+    protected
+    void writeText(final int data) throws IOException {
+        out.write(data);
+    }
+
+    /**
+     * Writes a run of text (that does not contain an escape sequence) to the underlying stream.
+     */
+    protected
+    void writeText(final byte[] bytes, final int offset, final int length) throws IOException {
+        out.write(bytes, offset, length);
+    }
+
+    private
+    void process(final int data) throws IOException {
         switch (state) {
             case LOOKING_FOR_FIRST_ESC_CHAR:
                 if (data == FIRST_ESC_CHAR) {
@@ -170,7 +243,7 @@ class AnsiOutputStream extends FilterOutputStream {
                     state = LOOKING_FOR_SECOND_ESC_CHAR;
                 }
                 else {
-                    out.write(data);
+                    writeText(data);
                 }
                 break;
 
@@ -196,35 +269,36 @@ class AnsiOutputStream extends FilterOutputStream {
                     state = LOOKING_FOR_STR_ARG_END;
                 }
                 else if ('0' <= data && data <= '9') {
-                    startOfValue = pos - 1;
+                    intValue = data - '0';
                     state = LOOKING_FOR_INT_ARG_END;
                 }
                 else if (';' == data) {
-                    options.add(null);
+                    addOption(OPTION_EMPTY, 0, 0);
                 }
                 else if ('?' == data) {
-                    options.add('?');
+                    addOption(OPTION_QUESTION, 0, 0);
                 }
                 else if ('=' == data) {
-                    options.add('=');
+                    addOption(OPTION_EQUALS, 0, 0);
                 }
                 else {
-                    reset(processEscapeCommand(options, data));
+                    reset(processEscapeCommand(data));
                 }
                 break;
 
             case LOOKING_FOR_INT_ARG_END:
                 buffer[pos++] = (byte) data;
 
-                if (!('0' <= data && data <= '9')) {
-                    String strValue = new String(buffer, startOfValue, (pos - 1) - startOfValue, CHARSET);
-                    Integer value = Integer.valueOf(strValue);
-                    options.add(value);
+                if ('0' <= data && data <= '9') {
+                    appendDigit(data);
+                }
+                else {
+                    addOption(OPTION_INT, intValue, 0);
                     if (data == ';') {
                         state = LOOKING_FOR_NEXT_ARG;
                     }
                     else {
-                        reset(processEscapeCommand(options, data));
+                        reset(processEscapeCommand(data));
                     }
                 }
                 break;
@@ -233,13 +307,12 @@ class AnsiOutputStream extends FilterOutputStream {
                 buffer[pos++] = (byte) data;
 
                 if ('"' != data) {
-                    String value = new String(buffer, startOfValue, (pos - 1) - startOfValue, CHARSET);
-                    options.add(value);
+                    addOption(OPTION_STRING, startOfValue, (pos - 1) - startOfValue);
                     if (data == ';') {
                         state = LOOKING_FOR_NEXT_ARG;
                     }
                     else {
-                        reset(processEscapeCommand(options, data));
+                        reset(processEscapeCommand(data));
                     }
                 }
                 break;
@@ -248,7 +321,7 @@ class AnsiOutputStream extends FilterOutputStream {
                 buffer[pos++] = (byte) data;
 
                 if ('0' <= data && data <= '9') {
-                    startOfValue = pos - 1;
+                    intValue = data - '0';
                     state = LOOKING_FOR_OSC_COMMAND_END;
                 }
                 else {
@@ -260,14 +333,12 @@ class AnsiOutputStream extends FilterOutputStream {
                 buffer[pos++] = (byte) data;
 
                 if (';' == data) {
-                    String strValue = new String(buffer, startOfValue, (pos - 1) - startOfValue, CHARSET);
-                    Integer value = Integer.valueOf(strValue);
-                    options.add(value);
+                    addOption(OPTION_INT, intValue, 0);
                     startOfValue = pos;
                     state = LOOKING_FOR_OSC_PARAM;
                 }
                 else if ('0' <= data && data <= '9') {
-                    // already pushed digit to buffer, just keep looking
+                    appendDigit(data);
                 }
                 else {
                     // oops, did not expect this
@@ -279,9 +350,8 @@ class AnsiOutputStream extends FilterOutputStream {
                 buffer[pos++] = (byte) data;
 
                 if (BEL == data) {
-                    String value = new String(buffer, startOfValue, (pos - 1) - startOfValue, CHARSET);
-                    options.add(value);
-                    reset(processOperatingSystemCommand(options));
+                    addOption(OPTION_STRING, startOfValue, (pos - 1) - startOfValue);
+                    reset(processOperatingSystemCommand());
                 }
                 else if (FIRST_ESC_CHAR == data) {
                     state = LOOKING_FOR_ST;
@@ -295,9 +365,8 @@ class AnsiOutputStream extends FilterOutputStream {
                 buffer[pos++] = (byte) data;
 
                 if (SECOND_ST_CHAR == data) {
-                    String value = new String(buffer, startOfValue, (pos - 2) - startOfValue, CHARSET);
-                    options.add(value);
-                    reset(processOperatingSystemCommand(options));
+                    addOption(OPTION_STRING, startOfValue, (pos - 2) - startOfValue);
+                    reset(processOperatingSystemCommand());
                 }
                 else {
                     state = LOOKING_FOR_OSC_PARAM;
@@ -312,6 +381,25 @@ class AnsiOutputStream extends FilterOutputStream {
         }
     }
 
+    private
+    void addOption(final byte type, final int value, final int length) {
+        optionTypes[optionCount] = type;
+        optionValues[optionCount] = value;
+        optionLengths[optionCount] = length;
+        optionCount++;
+    }
+
+    private
+    void appendDigit(final int digit) {
+        if (intValue <= (Integer.MAX_VALUE - 9) / 10) {
+            intValue = intValue * 10 + (digit - '0');
+        }
+        else {
+            // way out of range for anything an escape sequence can do. Saturate instead of overflowing
+            intValue = Integer.MAX_VALUE;
+        }
+    }
+
     /**
      * Resets all state to continue with regular parsing
      * @param skipBuffer if current buffer should be skipped or written to out
@@ -325,7 +413,7 @@ class AnsiOutputStream extends FilterOutputStream {
 
         pos = 0;
         startOfValue = 0;
-        options.clear();
+        optionCount = 0;
         state = LOOKING_FOR_FIRST_ESC_CHAR;
     }
 
@@ -333,54 +421,54 @@ class AnsiOutputStream extends FilterOutputStream {
      * @return true if the escape command was processed.
      */
     private
-    boolean processEscapeCommand(ArrayList<Object> options, int command) throws IOException {
+    boolean processEscapeCommand(final int command) throws IOException {
         try {
             switch (command) {
                 case CURSOR_UP:
-                    processCursorUp(optionInt(options, 0, 1));
+                    processCursorUp(optionInt(0, 1));
                     return true;
                 case CURSOR_DOWN:
-                    processCursorDown(optionInt(options, 0, 1));
+                    processCursorDown(optionInt(0, 1));
                     return true;
                 case CURSOR_FORWARD:
-                    processCursorRight(optionInt(options, 0, 1));
+                    processCursorRight(optionInt(0, 1));
                     return true;
                 case CURSOR_BACK:
-                    processCursorLeft(optionInt(options, 0, 1));
+                    processCursorLeft(optionInt(0, 1));
                     return true;
                 case CURSOR_DOWN_LINE:
-                    processCursorDownLine(optionInt(options, 0, 1));
+                    processCursorDownLine(optionInt(0, 1));
                     return true;
                 case CURSOR_UP_LINE:
-                    processCursorUpLine(optionInt(options, 0, 1));
+                    processCursorUpLine(optionInt(0, 1));
                     return true;
                 case CURSOR_TO_COL:
-                    processCursorToColumn(optionInt(options, 0));
+                    processCursorToColumn(optionInt(0));
                     return true;
                 case CURSOR_POS:
                 case CURSOR_POS_ALT:
-                    processCursorTo(optionInt(options, 0, 1), optionInt(options, 1, 1));
+                    processCursorTo(optionInt(0, 1), optionInt(1, 1));
                     return true;
                 case CURSOR_ERASE_SCREEN:
-                    processEraseScreen(optionInt(options, 0, 0));
+                    processEraseScreen(optionInt(0, 0));
                     return true;
                 case CURSOR_ERASE_LINE:
-                    processEraseLine(optionInt(options, 0, 0));
+                    processEraseLine(optionInt(0, 0));
                     return true;
                 case SCROLL_UP:
-                    processScrollUp(optionInt(options, 0, 1));
+                    processScrollUp(optionInt(0, 1));
                     return true;
                 case SCROLL_DOWN:
-                    processScrollDown(optionInt(options, 0, 1));
+                    processScrollDown(optionInt(0, 1));
                     return true;
                 case TEXT_ATTRIBUTE:
                     int count = 0;
-                    for (Object next : options) {
-                        if (next != null) {
+                    for (int i = 0; i < optionCount; i++) {
+                        if (optionTypes[i] != OPTION_EMPTY) {
                             count++;
 
-                            // will throw a ClassCast exception IF NOT an int.
-                            int value = (Integer) next;
+                            // will throw an IllegalArgumentException IF NOT an int.
+                            int value = optionInt(i);
 
                             if (30 <= value && value <= 37) {
                                 // foreground
@@ -390,6 +478,17 @@ class AnsiOutputStream extends FilterOutputStream {
                                 // background
                                 processSetBackgroundColor(value - 40);
                             }
+                            else if (90 <= value && value <= 97) {
+                                // foreground bright
+                                processSetForegroundColor(value - 90, true);
+                            }
+                            else if (100 <= value && value <= 107) {
+                                // background bright
+                                processSetBackgroundColor(value - 100, true);
+                            }
+                            else if (value == ATTRIBUTE_EXTENDED_FG || value == ATTRIBUTE_EXTENDED_BG) {
+                                i = processExtendedColor(value == ATTRIBUTE_EXTENDED_FG, i);
+                            }
                             else {
                                 switch (value) {
                                     case ATTRIBUTE_DEFAULT_FG:
@@ -421,11 +520,11 @@ class AnsiOutputStream extends FilterOutputStream {
 
                 default:
                     if ('a' <= command && command <= 'z') {
-                        processUnknownExtension(options, command);
+                        processUnknownExtension(optionsAsList(), command);
                         return true;
                     }
                     if ('A' <= command && command <= 'Z') {
-                        processUnknownExtension(options, command);
+                        processUnknownExtension(optionsAsList(), command);
                         return true;
                     }
                     return false;
@@ -436,14 +535,58 @@ class AnsiOutputStream extends FilterOutputStream {
         return false;
     }
 
+    /**
+     * Processes the options of an extended (256 color or truecolor) SGR color, which start after the specified index.
+     *
+     * @return the index of the last option that was used
+     */
+    private
+    int processExtendedColor(final boolean foreground, int index) throws IOException {
+        // will throw an IllegalArgumentException IF NOT an int.
+        int type = optionInt(++index);
+
+        if (type == 5) {
+            int paletteIndex = optionInt(++index);
+            if (paletteIndex < 0 || paletteIndex > 255) {
+                throw new IllegalArgumentException();
+            }
+
+            if (foreground) {
+                processSetForegroundColorExt(paletteIndex);
+            }
+            else {
+                processSetBackgroundColorExt(paletteIndex);
+            }
+        }
+        else if (type == 2) {
+            int r = optionInt(++index);
+            int g = optionInt(++index);
+            int b = optionInt(++index);
+            if ((r | g | b) < 0 || r > 255 || g > 255 || b > 255) {
+                throw new IllegalArgumentException();
+            }
+
+            if (foreground) {
+                processSetForegroundColorExt(r, g, b);
+            }
+            else {
+                processSetBackgroundColorExt(r, g, b);
+            }
+        }
+        else {
+            throw new IllegalArgumentException();
+        }
+
+        return index;
+    }
 
     /**
      * @return true if the operating system command was processed.
      */
     private
-    boolean processOperatingSystemCommand(final ArrayList<Object> options) throws IOException {
-        final int command = optionInt(options, 0);
-        final String label = (String) options.get(1);
+    boolean processOperatingSystemCommand() throws IOException {
+        final int command = optionInt(0);
+        final String label = new String(buffer, optionValues[1], optionLengths[1], CHARSET);
 
         // for command > 2 label could be composed (i.e. contain ';'), but we'll leave
         // it to processUnknownOperatingSystemCommand implementations to handle that
@@ -492,10 +635,64 @@ class AnsiOutputStream extends FilterOutputStream {
     void processSetForegroundColor(int color) throws IOException {
     }
 
+    /**
+     * Sets one of the 8 colors (or the bright version of it, from SGR 90-97) as the foreground color. By default, the bright version is
+     * the same as the normal color.
+     */
+    protected
+    void processSetForegroundColor(int color, boolean bright) throws IOException {
+        processSetForegroundColor(color);
+    }
+
+    /**
+     * Sets a color from the 256 color palette as the foreground color. By default, only the first 16 (the normal and bright colors)
+     * are supported.
+     */
+    protected
+    void processSetForegroundColorExt(int paletteIndex) throws IOException {
+        if (paletteIndex < 16) {
+            processSetForegroundColor(paletteIndex & 7, paletteIndex >= 8);
+        }
+    }
+
+    /**
+     * Sets a truecolor (24 bit) foreground color. By default, this is ignored.
+     */
+    protected
+    void processSetForegroundColorExt(int r, int g, int b) throws IOException {
+    }
+
     protected
     void processSetBackgroundColor(int color) throws IOException {
     }
 
+    /**
+     * Sets one of the 8 colors (or the bright version of it, from SGR 100-107) as the background color. By default, the bright version
+     * is the same as the normal color.
+     */
+    protected
+    void processSetBackgroundColor(int color, boolean bright) throws IOException {
+        processSetBackgroundColor(color);
+    }
+
+    /**
+     * Sets a color from the 256 color palette as the background color. By default, only the first 16 (the normal and bright colors)
+     * are supported.
+     */
+    protected
+    void processSetBackgroundColorExt(int paletteIndex) throws IOException {
+        if (paletteIndex < 16) {
+            processSetBackgroundColor(paletteIndex & 7, paletteIndex >= 8);
+        }
+    }
+
+    /**
+     * Sets a truecolor (24 bit) background color. By default, this is ignored.
+     */
+    protected
+    void processSetBackgroundColorExt(int r, int g, int b) throws IOException {
+    }
+
     protected
     void processDefaultTextColor() throws IOException {
     }
@@ -549,33 +746,55 @@ class AnsiOutputStream extends FilterOutputStream {
     }
 
     private
-    int optionInt(final ArrayList<Object> options, final int index) {
-        if (options.size() <= index) {
-            throw new IllegalArgumentException();
-        }
-        Object value = options.get(index);
-        if (value == null) {
+    int optionInt(final int index) {
+        if (optionCount <= index || optionTypes[index] != OPTION_INT) {
             throw new IllegalArgumentException();
         }
-        if (!value.getClass()
-                  .equals(Integer.class)) {
-            throw new IllegalArgumentException();
-        }
-        return (Integer) value;
+        return optionValues[index];
     }
 
     private
-    int optionInt(final ArrayList<Object> options, final int index, final int defaultValue) {
-        if (options.size() > index) {
-            Object value = options.get(index);
-            if (value == null) {
+    int optionInt(final int index, final int defaultValue) {
+        if (optionCount > index) {
+            byte type = optionTypes[index];
+            if (type == OPTION_EMPTY) {
                 return defaultValue;
             }
-            return (Integer) value;
+            if (type != OPTION_INT) {
+                throw new IllegalArgumentException();
+            }
+            return optionValues[index];
         }
         return defaultValue;
     }
 
+    /**
+     * Only used for the (rare) unknown extensions, since the options are otherwise never boxed.
+     */
+    private
+    ArrayList<Object> optionsAsList() {
+        ArrayList<Object> options = new ArrayList<Object>(optionCount);
+        for (int i = 0; i < optionCount; i++) {
+            switch (optionTypes[i]) {
+                case OPTION_INT:
+                    options.add(optionValues[i]);
+                    break;
+                case OPTION_STRING:
+                    options.add(new String(buffer, optionValues[i], optionLengths[i], CHARSET));
+                    break;
+                case OPTION_QUESTION:
+                    options.add('?');
+                    break;
+                case OPTION_EQUALS:
+                    options.add('=');
+                    break;
+                default:
+                    options.add(null);
+            }
+        }
+        return options;
+    }
+
     @Override
     public
     void close() throws IOException {
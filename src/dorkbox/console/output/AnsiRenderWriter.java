@@ -13,69 +13,306 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package dorkbox.console.output;
 
-import static dorkbox.console.output.AnsiRenderer.render;
-
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Writer;
-import java.util.Locale;
 
 /**
  * Print writer which supports automatic ANSI color rendering via {@link AnsiRenderer}.
+ * <p>
+ * The markup is rendered as it is written, so a "@|code text|@" token can be split across any number of writes. Only the start of a
+ * token (up to the end of the code names) is held back until it is complete, the text of a token is written as soon as it arrives.
+ * Because of that, a token that is never closed leaves the text styled until the writer is closed (which then resets the style).
+ * Markup with invalid code names is written as-is.
  *
  * @author <a href="mailto:jason@planet57.com">Jason Dillon</a>
  * @author <a href="http://hiramchirino.com">Hiram Chirino</a>
  */
 public
 class AnsiRenderWriter extends PrintWriter {
+    // the states of the markup tokenizer
+    private static final int TEXT = 0;           // plain text
+    private static final int TEXT_AT = 1;        // plain text, after a '@' (which might be the start of a token)
+    private static final int CODES = 2;          // the code names of a token
+    private static final int CODES_BAR = 3;      // the code names of a token, after a '|' (which might be the end of the token)
+    private static final int STYLED_TEXT = 4;    // the text of a token
+    private static final int STYLED_BAR = 5;     // the text of a token, after a '|' (which might be the end of the token)
+
+    // code names that are longer than this are not markup (so that a stray "@|" does not hold back all of the output)
+    private static final int MAX_CODES_LENGTH = 128;
+
+    private static final char[] RESET = Ansi.ansi().reset().toString().toCharArray();
+
+    private final boolean autoFlush;
+
+    private int state = TEXT;
+    private final StringBuilder codes = new StringBuilder(32);
+
+    // used to convert the code names to escape sequences
+    private final StringBuilder escape = new StringBuilder(32);
+    private final Ansi escapeAnsi = Ansi.ansi(escape);
+    private char[] escapeChars = new char[32];
+
+    // strings (and single chars) are copied into this, and then tokenized as chars
+    private final char[] chars = new char[1024];
 
     public
     AnsiRenderWriter(final OutputStream out) {
-        super(out);
+        this(out, false);
     }
 
     public
     AnsiRenderWriter(final OutputStream out, final boolean autoFlush) {
         super(out, autoFlush);
+        this.autoFlush = autoFlush;
     }
 
     public
     AnsiRenderWriter(final Writer out) {
-        super(out);
+        this(out, false);
     }
 
     public
     AnsiRenderWriter(final Writer out, final boolean autoFlush) {
         super(out, autoFlush);
+        this.autoFlush = autoFlush;
     }
 
     @Override
     public
-    void write(final String s) {
-        if (s != null && s.contains(AnsiRenderer.BEGIN_TOKEN)) {
-            super.write(render(s));
+    void write(final int c) {
+        synchronized (lock) {
+            chars[0] = (char) c;
+            render(chars, 0, 1);
         }
-        else {
-            super.write(s);
+    }
+
+    @Override
+    public
+    void write(final char[] buffer, final int offset, final int length) {
+        synchronized (lock) {
+            render(buffer, offset, offset + length);
         }
     }
 
     @Override
     public
-    PrintWriter format(final String format, final Object... args) {
-        flush(); // prevents partial output from being written while formatting or we will get rendering exceptions
-        print(String.format(format, args));
-        return this;
+    void write(final String s, int offset, int length) {
+        synchronized (lock) {
+            final char[] chars = this.chars;
+
+            while (length > 0) {
+                final int count = Math.min(length, chars.length);
+                s.getChars(offset, offset + count, chars, 0);
+                render(chars, 0, count);
+
+                offset += count;
+                length -= count;
+            }
+        }
+    }
+
+    /**
+     * The line separator is written through the tokenizer (PrintWriter writes it directly), so that it stays in order with markup
+     * that is held back.
+     */
+    @Override
+    public
+    void println() {
+        synchronized (lock) {
+            write(System.lineSeparator());
+            if (autoFlush) {
+                flush();
+            }
+        }
     }
 
+    /**
+     * Writes a token that is not complete as-is (or resets the style, when it is in the text of a token), and closes the writer.
+     */
     @Override
     public
-    PrintWriter format(final Locale l, final String format, final Object... args) {
-        flush(); // prevents partial output from being written while formatting or we will get rendering exceptions
-        print(String.format(l, format, args));
-        return this;
+    void close() {
+        synchronized (lock) {
+            switch (state) {
+                case TEXT_AT:
+                    super.write('@');
+                    break;
+                case CODES:
+                    writeCodes("");
+                    break;
+                case CODES_BAR:
+                    writeCodes("|");
+                    break;
+                case STYLED_BAR:
+                    super.write('|');
+                    super.write(RESET, 0, RESET.length);
+                    break;
+                case STYLED_TEXT:
+                    super.write(RESET, 0, RESET.length);
+                    break;
+            }
+
+            state = TEXT;
+        }
+
+        super.close();
+    }
+
+    /**
+     * Tokenizes the chars, and writes them (with the markup replaced by escape sequences). Runs of plain (or styled) text are written
+     * with a single write.
+     */
+    private
+    void render(final char[] buffer, final int offset, final int end) {
+        // the start of the text that has not been written yet
+        int start = offset;
+
+        for (int i = offset; i < end; i++) {
+            final char c = buffer[i];
+
+            switch (state) {
+                case TEXT:
+                    if (c == '@') {
+                        super.write(buffer, start, i - start);
+                        start = i + 1;
+                        state = TEXT_AT;
+                    }
+                    break;
+
+                case TEXT_AT:
+                    if (c == '|') {
+                        codes.setLength(0);
+                        start = i + 1;
+                        state = CODES;
+                    }
+                    else {
+                        // not a token. The char is processed again as text (it might be another '@')
+                        super.write('@');
+                        start = i;
+                        state = TEXT;
+                        i--;
+                    }
+                    break;
+
+                case CODES:
+                    if (c == ' ') {
+                        state = writeEscape() ? STYLED_TEXT : TEXT;
+                        start = i + 1;
+                    }
+                    else if (c == '|') {
+                        state = CODES_BAR;
+                    }
+                    else if (codes.length() < MAX_CODES_LENGTH) {
+                        codes.append(c);
+                    }
+                    else {
+                        // not a token
+                        writeCodes("");
+                        start = i;
+                        state = TEXT;
+                        i--;
+                    }
+                    break;
+
+                case CODES_BAR:
+                    if (c == '@') {
+                        // a token without any text is not markup
+                        writeCodes("|@");
+                        start = i + 1;
+                        state = TEXT;
+                    }
+                    else {
+                        codes.append('|');
+                        state = CODES;
+                        i--;
+                    }
+                    break;
+
+                case STYLED_TEXT:
+                    if (c == '|') {
+                        super.write(buffer, start, i - start);
+                        start = i + 1;
+                        state = STYLED_BAR;
+                    }
+                    break;
+
+                case STYLED_BAR:
+                    if (c == '@') {
+                        super.write(RESET, 0, RESET.length);
+                        start = i + 1;
+                        state = TEXT;
+                    }
+                    else {
+                        super.write('|');
+                        start = i;
+                        state = STYLED_TEXT;
+                        i--;
+                    }
+                    break;
+            }
+        }
+
+        if (state == TEXT || state == STYLED_TEXT) {
+            super.write(buffer, start, end - start);
+        }
+    }
+
+    /**
+     * Writes the escape sequence of the code names.
+     *
+     * @return false if a code name is not valid, in which case the token is written as-is
+     */
+    private
+    boolean writeEscape() {
+        final StringBuilder codes = this.codes;
+        final Ansi ansi = escapeAnsi.clear();
+
+        final int length = codes.length();
+        int start = 0;
+
+        while (start < length) {
+            int separator = codes.indexOf(AnsiRenderer.CODE_LIST_SEPARATOR, start);
+            if (separator == -1) {
+                separator = length;
+            }
+
+            if (separator > start) {
+                AnsiCodeMap code = AnsiRenderer.find(codes.substring(start, separator));
+                if (code == null) {
+                    writeCodes(" ");
+                    return false;
+                }
+
+                AnsiRenderer.render(ansi, code);
+            }
+
+            start = separator + 1;
+        }
+
+        ansi.flush();
+
+        final StringBuilder escape = this.escape;
+        final int escapeLength = escape.length();
+        if (escapeLength > escapeChars.length) {
+            escapeChars = new char[escapeLength];
+        }
+
+        escape.getChars(0, escapeLength, escapeChars, 0);
+        super.write(escapeChars, 0, escapeLength);
+
+        return true;
+    }
+
+    /**
+     * Writes the start of a token (that turned out to not be markup) as-is
+     */
+    private
+    void writeCodes(final String suffix) {
+        super.write(AnsiRenderer.BEGIN_TOKEN, 0, AnsiRenderer.BEGIN_TOKEN.length());
+        super.write(codes.toString(), 0, codes.length());
+        super.write(suffix, 0, suffix.length());
     }
 }
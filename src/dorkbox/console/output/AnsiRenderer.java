@@ -30,10 +30,15 @@
  */
 package dorkbox.console.output;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
+import dorkbox.console.Console;
+
 /**
  * Renders ANSI color escape-codes in strings by parsing out some special syntax to pick up the correct fluff to use.
  * <p>
@@ -54,6 +59,9 @@ import java.util.Map;
  *   <tt>@|bold,red Warning!|@</tt>
  * </pre>
  * For Colors, FG_x and BG_x are supported, as are BRIGHT_x (and consequently, FG_BRIGHT_x)
+ * <p>
+ * Markup that is rendered often should be compiled once with {@link #compile(String)}, which parses it into an {@link AnsiTemplate}
+ * (compiled templates are cached).
  *
  * @author dorkbox, llc
  * @author <a href="mailto:jason@planet57.com">Jason Dillon</a>
@@ -72,6 +80,15 @@ class AnsiRenderer {
 
     private static Map<String, AnsiCodeMap> codeMap = new HashMap<String, AnsiCodeMap>(32);
 
+    // LRU cache of the compiled templates, access is synchronized on the map
+    private static final Map<String, AnsiTemplate> templateCache = new LinkedHashMap<String, AnsiTemplate>(64, 0.75F, true) {
+        @Override
+        protected
+        boolean removeEldestEntry(final Map.Entry<String, AnsiTemplate> eldest) {
+            return size() > Console.ANSI_TEMPLATE_CACHE_SIZE;
+        }
+    };
+
     static {
         // have to make sure that all the different categories are added to our map.
         Color red = Color.RED;
@@ -110,9 +127,11 @@ class AnsiRenderer {
      */
     public static
     Ansi render(Ansi ansi, String codeName) {
-        AnsiCodeMap ansiCodeMap = codeMap.get(codeName.toUpperCase(Locale.ENGLISH));
-        assert ansiCodeMap != null : "Invalid ANSI code name: '" + codeName + "'";
+        return render(ansi, lookup(codeName));
+    }
 
+    static
+    Ansi render(Ansi ansi, final AnsiCodeMap ansiCodeMap) {
         if (ansiCodeMap.isColor()) {
             if (ansiCodeMap.isBackgroundColor()) {
                 ansi = ansi.bg(ansiCodeMap.getColor());
@@ -123,13 +142,29 @@ class AnsiRenderer {
         }
         else if (ansiCodeMap.isAttribute()) {
             ansi = ansi.a(ansiCodeMap.getAttribute());
-        } else {
-            assert false : "Undetermined ANSI code name: '" + codeName + "'";
         }
 
         return ansi;
     }
 
+    /**
+     * @return the code for the (case insensitive) name, or null if it is not a valid code name
+     */
+    static
+    AnsiCodeMap find(final String codeName) {
+        return codeMap.get(codeName.toUpperCase(Locale.ENGLISH));
+    }
+
+    private static
+    AnsiCodeMap lookup(final String codeName) throws IllegalArgumentException {
+        AnsiCodeMap ansiCodeMap = find(codeName);
+        if (ansiCodeMap == null) {
+            throw new IllegalArgumentException("Invalid ANSI code name: '" + codeName + "'");
+        }
+
+        return ansiCodeMap;
+    }
+
     /**
      * Renders text using the {@link AnsiCodeMap} names.
      *
@@ -146,45 +181,112 @@ class AnsiRenderer {
 
     public static
     String render(final String input) throws IllegalArgumentException {
-        StringBuilder buff = new StringBuilder();
+        if (input.indexOf(BEGIN_TOKEN) == -1) {
+            return input;
+        }
+
+        return parse(input).render();
+    }
+
+    /**
+     * Compiles the markup into a template, which can be rendered without parsing the markup again. Templates are cached (up to
+     * {@link Console#ANSI_TEMPLATE_CACHE_SIZE}), so compiling the same markup again returns the same template.
+     *
+     * @param template the "@|code text|@" markup
+     *
+     * @throws IllegalArgumentException if the markup has an invalid code name
+     */
+    public static
+    AnsiTemplate compile(final String template) throws IllegalArgumentException {
+        AnsiTemplate compiled;
+        synchronized (templateCache) {
+            compiled = templateCache.get(template);
+        }
+
+        if (compiled == null) {
+            // parsed without holding the lock. Another thread might parse the same markup at the same time, which is harmless.
+            compiled = parse(template);
+
+            synchronized (templateCache) {
+                templateCache.put(template, compiled);
+            }
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Splits the markup into plain and styled segments. If the markup is not complete (there is no end token, or no text), the entire
+     * input is plain text. The template is not cached.
+     */
+    static
+    AnsiTemplate parse(final String input) throws IllegalArgumentException {
+        final List<String> texts = new ArrayList<String>();
+        final List<AnsiCodeMap[]> codes = new ArrayList<AnsiCodeMap[]>();
+        final int length = input.length();
 
         int i = 0;
-        int j, k;
 
-        while (true) {
-            j = input.indexOf(BEGIN_TOKEN, i);
+        while (i < length) {
+            int j = input.indexOf(BEGIN_TOKEN, i);
             if (j == -1) {
-                if (i == 0) {
-                    return input;
-                }
-                else {
-                    buff.append(input.substring(i, input.length()));
-                    return buff.toString();
-                }
+                texts.add(input.substring(i));
+                codes.add(null);
+                break;
             }
-            else {
-                buff.append(input.substring(i, j));
-                k = input.indexOf(END_TOKEN, j);
-
-                if (k == -1) {
-                    return input;
-                }
-                else {
-                    j += BEGIN_TOKEN_LEN;
-                    String spec = input.substring(j, k);
-
-                    String[] items = spec.split(CODE_TEXT_SEPARATOR, 2);
-                    if (items.length == 1) {
-                        return input;
-                    }
-                    String replacement = render(items[1], items[0].split(CODE_LIST_SEPARATOR));
-
-                    buff.append(replacement);
-
-                    i = k + END_TOKEN_LEN;
-                }
+
+            int k = input.indexOf(END_TOKEN, j);
+            if (k == -1) {
+                return plain(input);
+            }
+
+            j += BEGIN_TOKEN_LEN;
+            int textStart = input.indexOf(CODE_TEXT_SEPARATOR, j);
+            if (textStart == -1 || textStart >= k) {
+                return plain(input);
+            }
+
+            if (j - BEGIN_TOKEN_LEN > i) {
+                texts.add(input.substring(i, j - BEGIN_TOKEN_LEN));
+                codes.add(null);
+            }
+
+            texts.add(input.substring(textStart + 1, k));
+            codes.add(parseCodes(input, j, textStart));
+
+            i = k + END_TOKEN_LEN;
+        }
+
+        if (texts.isEmpty()) {
+            return plain(input);
+        }
+
+        return new AnsiTemplate(input, texts.toArray(new String[0]), codes.toArray(new AnsiCodeMap[0][]));
+    }
+
+    private static
+    AnsiCodeMap[] parseCodes(final String input, int start, final int end) throws IllegalArgumentException {
+        final List<AnsiCodeMap> codes = new ArrayList<AnsiCodeMap>(4);
+
+        while (start < end) {
+            int separator = input.indexOf(CODE_LIST_SEPARATOR, start);
+            if (separator == -1 || separator > end) {
+                separator = end;
+            }
+
+            if (separator > start) {
+                codes.add(lookup(input.substring(start, separator)));
             }
+
+            start = separator + 1;
         }
+
+        return codes.toArray(new AnsiCodeMap[0]);
+    }
+
+    private static
+    AnsiTemplate plain(final String input) {
+        return new AnsiTemplate(input, new String[] {input}, new AnsiCodeMap[][] {null});
     }
 
     /**
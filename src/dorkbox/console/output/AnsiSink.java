@@ -0,0 +1,488 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.output;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Where an {@link Ansi} writes its output. Escape sequences are always ASCII, so byte based sinks write them directly (from the
+ * precomputed tables) and only have to encode the text.
+ * <p>
+ * IOExceptions (from an Appendable or OutputStream) are rethrown as RuntimeExceptions, since the Ansi API does not declare them.
+ */
+abstract
+class AnsiSink {
+
+    static
+    AnsiSink of(final StringBuilder builder) {
+        return new StringBuilderSink(builder);
+    }
+
+    static
+    AnsiSink of(final Appendable appendable) {
+        if (appendable instanceof StringBuilder) {
+            return new StringBuilderSink((StringBuilder) appendable);
+        }
+        return new AppendableSink(appendable);
+    }
+
+    static
+    AnsiSink of(final ByteBuffer buffer) {
+        return new ByteBufferSink(buffer);
+    }
+
+    static
+    AnsiSink of(final OutputStream outputStream) {
+        return new OutputStreamSink(outputStream);
+    }
+
+    abstract
+    void append(char c);
+
+    abstract
+    void append(char[] chars, int offset, int length);
+
+    abstract
+    void append(CharSequence value, int start, int end);
+
+    /**
+     * Appends a precomputed escape sequence
+     */
+    abstract
+    void append(EscapeCodes.Sequence sequence);
+
+    void append(final char[] chars) {
+        append(chars, 0, chars.length);
+    }
+
+    void append(final CharSequence value) {
+        if (value == null) {
+            append("null", 0, 4);
+        }
+        else {
+            append(value, 0, value.length());
+        }
+    }
+
+    void append(final int value) {
+        append(String.valueOf(value));
+    }
+
+    void append(final long value) {
+        append(String.valueOf(value));
+    }
+
+    /**
+     * Writes anything that is buffered to the destination
+     */
+    void flush() {
+    }
+
+    /**
+     * Discards everything that has not been written to the destination yet
+     */
+    void clear() {
+    }
+
+    /**
+     * @return a copy of everything that was written, or null if what was written is not available (ie: it was written to a stream)
+     */
+    StringBuilder copy() {
+        return null;
+    }
+
+    /**
+     * @return everything that was written (without copying it), or null if what was written is not available
+     */
+    CharSequence text() {
+        return null;
+    }
+
+
+    static final
+    class StringBuilderSink extends AnsiSink {
+        private final StringBuilder builder;
+
+        StringBuilderSink(final StringBuilder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        void append(final char c) {
+            builder.append(c);
+        }
+
+        @Override
+        void append(final char[] chars, final int offset, final int length) {
+            builder.append(chars, offset, length);
+        }
+
+        @Override
+        void append(final CharSequence value, final int start, final int end) {
+            builder.append(value, start, end);
+        }
+
+        @Override
+        void append(final CharSequence value) {
+            builder.append(value);
+        }
+
+        @Override
+        void append(final EscapeCodes.Sequence sequence) {
+            builder.append(sequence.chars);
+        }
+
+        @Override
+        void append(final int value) {
+            builder.append(value);
+        }
+
+        @Override
+        void append(final long value) {
+            builder.append(value);
+        }
+
+        @Override
+        StringBuilder copy() {
+            return new StringBuilder(builder);
+        }
+
+        @Override
+        CharSequence text() {
+            return builder;
+        }
+
+        /**
+         * Discards the text, but keeps the capacity
+         */
+        @Override
+        void clear() {
+            builder.setLength(0);
+        }
+
+        /**
+         * Discards the text, and releases the memory if it has grown larger than the specified capacity
+         */
+        void clear(final int maxCapacity) {
+            builder.setLength(0);
+
+            if (builder.capacity() > maxCapacity) {
+                builder.trimToSize();
+                builder.ensureCapacity(maxCapacity);
+            }
+        }
+
+        @Override
+        public
+        String toString() {
+            return builder.toString();
+        }
+    }
+
+
+    static final
+    class AppendableSink extends AnsiSink {
+        private final Appendable appendable;
+
+        AppendableSink(final Appendable appendable) {
+            this.appendable = appendable;
+        }
+
+        @Override
+        void append(final char c) {
+            try {
+                appendable.append(c);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        void append(final char[] chars, final int offset, final int length) {
+            append(CharBuffer.wrap(chars, offset, length), 0, length);
+        }
+
+        @Override
+        void append(final CharSequence value, final int start, final int end) {
+            try {
+                appendable.append(value, start, end);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        void append(final EscapeCodes.Sequence sequence) {
+            append(sequence.chars, 0, sequence.chars.length);
+        }
+
+        @Override
+        void flush() {
+            if (appendable instanceof Flushable) {
+                try {
+                    ((Flushable) appendable).flush();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        @Override
+        public
+        String toString() {
+            return appendable.toString();
+        }
+    }
+
+
+    /**
+     * Encodes the text as UTF-8. A surrogate pair that is split across two appends is still encoded as a single character.
+     */
+    abstract static
+    class ByteSink extends AnsiSink {
+        private static final int BUFFER_SIZE = 1024;
+        private static final byte REPLACEMENT = '?';
+
+        // the most bytes that a single char is encoded to (a surrogate pair is 4 bytes for 2 chars, or '?' + 3 bytes if it is broken)
+        private static final int MAX_CHAR_BYTES = 4;
+
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position = 0;
+
+        // when false, everything is written to the destination after every append
+        private final boolean buffered;
+
+        // the high surrogate from the end of the previous append, waiting for its low surrogate
+        private char highSurrogate = 0;
+
+        ByteSink(final boolean buffered) {
+            this.buffered = buffered;
+        }
+
+        abstract
+        void write(byte[] bytes, int offset, int length);
+
+        @Override
+        final
+        void append(final char c) {
+            if (position > BUFFER_SIZE - MAX_CHAR_BYTES) {
+                drain();
+            }
+            position = encode(c, buffer, position);
+
+            if (!buffered) {
+                drain();
+            }
+        }
+
+        @Override
+        final
+        void append(final char[] chars, final int offset, final int length) {
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                if (position > BUFFER_SIZE - MAX_CHAR_BYTES) {
+                    drain();
+                }
+                position = encode(chars[i], buffer, position);
+            }
+
+            if (!buffered) {
+                drain();
+            }
+        }
+
+        @Override
+        final
+        void append(final CharSequence value, final int start, final int end) {
+            for (int i = start; i < end; i++) {
+                if (position > BUFFER_SIZE - MAX_CHAR_BYTES) {
+                    drain();
+                }
+                position = encode(value.charAt(i), buffer, position);
+            }
+
+            if (!buffered) {
+                drain();
+            }
+        }
+
+        @Override
+        final
+        void append(final EscapeCodes.Sequence sequence) {
+            flushSurrogate();
+
+            final byte[] bytes = sequence.bytes;
+            if (position > BUFFER_SIZE - bytes.length) {
+                drain();
+            }
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+
+            if (!buffered) {
+                drain();
+            }
+        }
+
+        /**
+         * @return the position after the encoded char
+         */
+        private
+        int encode(final char c, final byte[] bytes, int position) {
+            if (highSurrogate != 0) {
+                final char high = highSurrogate;
+                highSurrogate = 0;
+
+                if (Character.isLowSurrogate(c)) {
+                    final int codePoint = Character.toCodePoint(high, c);
+                    bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                    return position;
+                }
+
+                // the high surrogate was not followed by a low surrogate
+                bytes[position++] = REPLACEMENT;
+            }
+
+            if (c < 0x80) {
+                bytes[position++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                bytes[position++] = (byte) (0xC0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c)) {
+                highSurrogate = c;
+            }
+            else if (Character.isLowSurrogate(c)) {
+                bytes[position++] = REPLACEMENT;
+            }
+            else {
+                bytes[position++] = (byte) (0xE0 | (c >> 12));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+
+            return position;
+        }
+
+        /**
+         * A high surrogate that is followed by anything other than a low surrogate (ie: an escape sequence) is not a character
+         */
+        private
+        void flushSurrogate() {
+            if (highSurrogate != 0) {
+                highSurrogate = 0;
+
+                if (position == BUFFER_SIZE) {
+                    drain();
+                }
+                buffer[position++] = REPLACEMENT;
+            }
+        }
+
+        /**
+         * Writes everything that is buffered to the destination
+         */
+        final
+        void drain() {
+            if (position > 0) {
+                write(buffer, 0, position);
+                position = 0;
+            }
+        }
+
+        @Override
+        void flush() {
+            flushSurrogate();
+            drain();
+        }
+
+        @Override
+        final
+        void clear() {
+            position = 0;
+            highSurrogate = 0;
+        }
+    }
+
+
+    static final
+    class ByteBufferSink extends ByteSink {
+        private final ByteBuffer buffer;
+
+        ByteBufferSink(final ByteBuffer buffer) {
+            // not buffered, so that the position of the ByteBuffer is always up-to-date
+            super(false);
+            this.buffer = buffer;
+        }
+
+        @Override
+        void write(final byte[] bytes, final int offset, final int length) {
+            buffer.put(bytes, offset, length);
+        }
+
+        @Override
+        public
+        String toString() {
+            return buffer.toString();
+        }
+    }
+
+
+    static final
+    class OutputStreamSink extends ByteSink {
+        private final OutputStream outputStream;
+
+        OutputStreamSink(final OutputStream outputStream) {
+            // buffered, so that every append is not a separate write
+            super(true);
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        void write(final byte[] bytes, final int offset, final int length) {
+            try {
+                outputStream.write(bytes, offset, length);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        void flush() {
+            super.flush();
+
+            try {
+                outputStream.flush();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public
+        String toString() {
+            drain();
+            return outputStream.toString();
+        }
+    }
+}
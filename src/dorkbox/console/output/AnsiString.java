@@ -16,46 +16,220 @@
 
 package dorkbox.console.output;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.nio.charset.Charset;
+import dorkbox.console.util.DisplayWidth;
 
 /**
  * An ANSI string which reports the size of rendered text correctly (ignoring any ANSI escapes).
+ * <p>
+ * The plain text (without the escape sequences) is only calculated when it is first needed, and {@link #length()},
+ * {@link #charAt(int)} and {@link #subSequence(int, int)} all refer to the plain text.
  *
  * @author <a href="mailto:jason@planet57.com">Jason Dillon</a>
  */
 public
 class AnsiString implements CharSequence {
-    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final char FIRST_ESC_CHAR = 27;
+    private static final char SECOND_ESC_CHAR = '[';
+    private static final char SECOND_OSC_CHAR = ']';
+    private static final char SECOND_ST_CHAR = '\\';
+    private static final char BEL = 7;
+
+    // the same limit as AnsiOutputStream, longer escape sequences are not stripped
+    private static final int MAX_ESCAPE_SEQUENCE_LENGTH = 100;
+
     private final CharSequence encoded;
 
-    private final CharSequence plain;
+    // used as the offsets when the text has no escape sequences (the offsets are then the same as the plain text)
+    private static final int[] NO_OFFSETS = new int[0];
+
+    // both are calculated when they are first needed
+    private volatile String plain;
+
+    // offsets[i] is the position in the encoded text right after the plain char (i - 1)
+    private volatile int[] offsets;
+
+    private volatile int displayWidth = -1;
 
     public
     AnsiString(final CharSequence str) {
         assert str != null;
         this.encoded = str;
-        this.plain = chew(str);
     }
 
+    /**
+     * Strips the escape sequences in a single pass over the chars, the same escape sequences that {@link AnsiOutputStream} strips.
+     *
+     * @param withOffsets true to also calculate the offsets of the plain chars in the encoded text
+     */
     private
-    CharSequence chew(final CharSequence str) {
-        assert str != null;
+    void chew(final boolean withOffsets) {
+        final CharSequence encoded = this.encoded;
+        final int length = encoded.length();
+
+        int i = 0;
+        while (i < length && encoded.charAt(i) != FIRST_ESC_CHAR) {
+            i++;
+        }
+
+        if (i == length) {
+            // nothing to strip
+            this.offsets = NO_OFFSETS;
+            plain = encoded.toString();
+            return;
+        }
+
+        final StringBuilder buffer = new StringBuilder(length);
+        final int[] offsets = withOffsets ? new int[length + 1] : null;
+
+        int start = 0;
+        while (i < length) {
+            final int escapeLength = escapeLength(encoded, i, length);
+
+            if (escapeLength > 0) {
+                append(buffer, offsets, start, i);
+                i += escapeLength;
+                start = i;
+            }
+            else {
+                i++;
+            }
+
+            while (i < length && encoded.charAt(i) != FIRST_ESC_CHAR) {
+                i++;
+            }
+        }
 
-        ByteArrayOutputStream buff = new ByteArrayOutputStream();
-        AnsiOutputStream out = new AnsiOutputStream(buff);
+        append(buffer, offsets, start, length);
 
-        try {
-            out.write(str.toString()
-                         .getBytes(CHARSET));
-            out.flush();
-            out.close();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        if (withOffsets) {
+            // the end of the plain text is the end of the encoded text (so it includes any escape sequences after the last char)
+            offsets[buffer.length()] = length;
+            this.offsets = offsets;
         }
 
-        return new String(buff.toByteArray());
+        plain = buffer.toString();
+    }
+
+    private
+    void append(final StringBuilder buffer, final int[] offsets, final int start, final int end) {
+        if (offsets != null) {
+            int index = buffer.length();
+            for (int i = start; i < end; i++) {
+                offsets[++index] = i + 1;
+            }
+        }
+
+        buffer.append(encoded, start, end);
+    }
+
+    /**
+     * @return the length of the complete (and stripped) escape sequence at the index, or 0 if there is none
+     */
+    private static
+    int escapeLength(final CharSequence chars, final int index, final int length) {
+        final int end = Math.min(length, index + MAX_ESCAPE_SEQUENCE_LENGTH);
+        int i = index + 1;
+
+        if (i >= end) {
+            return 0;
+        }
+
+        final char second = chars.charAt(i++);
+
+        if (second == SECOND_ESC_CHAR) {
+            while (i < end) {
+                final char c = chars.charAt(i++);
+
+                if (('0' <= c && c <= '9') || c == ';' || c == '?' || c == '=') {
+                    continue;
+                }
+
+                if (c == '"') {
+                    while (i < end && chars.charAt(i) != '"') {
+                        i++;
+                    }
+                    i++;
+                    continue;
+                }
+
+                if (('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z')) {
+                    return i - index;
+                }
+
+                return 0;
+            }
+        }
+        else if (second == SECOND_OSC_CHAR) {
+            // the command number, followed by ';' and the parameter
+            final int commandStart = i;
+            while (i < end && '0' <= chars.charAt(i) && chars.charAt(i) <= '9') {
+                i++;
+            }
+
+            if (i == commandStart || i >= end || chars.charAt(i++) != ';') {
+                return 0;
+            }
+
+            while (i < end) {
+                final char c = chars.charAt(i++);
+
+                if (c == BEL) {
+                    return i - index;
+                }
+
+                if (c == FIRST_ESC_CHAR && i < end && chars.charAt(i) == SECOND_ST_CHAR) {
+                    return i + 1 - index;
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * @return the number of columns that the text occupies in the console (wide characters use 2 columns, combining marks none), which
+     * is not always the same as the length of the plain text.
+     *
+     * @see DisplayWidth
+     */
+    public
+    int displayWidth() {
+        int width = displayWidth;
+        if (width == -1) {
+            width = displayWidth(encoded, 0, encoded.length());
+            displayWidth = width;
+        }
+        return width;
+    }
+
+    /**
+     * @return the number of columns that the text occupies in the console, without the escape sequences
+     */
+    static
+    int displayWidth(final CharSequence chars, final int start, final int end) {
+        int width = 0;
+
+        for (int i = start; i < end; i++) {
+            final char c = chars.charAt(i);
+
+            if (c >= 0x20 && c < 0x7F) {
+                width++;
+            }
+            else if (c == FIRST_ESC_CHAR) {
+                final int escapeLength = escapeLength(chars, i, end);
+                if (escapeLength > 0) {
+                    i += escapeLength - 1;
+                }
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                width += DisplayWidth.width(Character.toCodePoint(c, chars.charAt(++i)));
+            }
+            else {
+                width += DisplayWidth.width((int) c);
+            }
+        }
+
+        return width;
     }
 
     public
@@ -65,27 +239,55 @@ class AnsiString implements CharSequence {
 
     public
     CharSequence getPlain() {
+        String plain = this.plain;
+        if (plain == null) {
+            chew(false);
+            plain = this.plain;
+        }
         return plain;
     }
 
-    // FIXME: charAt() and subSequence() will make things barf, need to call toString() first to get expected results
-
     @Override
     public
     int length() {
         return getPlain().length();
     }
 
+    /**
+     * @return the char of the plain text at the index
+     */
     @Override
     public
     char charAt(final int index) {
-        return getEncoded().charAt(index);
+        return getPlain().charAt(index);
     }
 
+    /**
+     * Returns the part of the encoded text that has the plain text from start to end. Escape sequences are included up to the next
+     * plain char, so the escape sequences before the first plain char (and after the last plain char) of the entire text are
+     * included when start is 0 (or end is the length).
+     * <p>
+     * Escape sequences that are before start are not part of the result, so the part might not have the style of the original text.
+     */
     @Override
     public
     CharSequence subSequence(final int start, final int end) {
-        return getEncoded().subSequence(start, end);
+        final CharSequence plain = getPlain();
+        if (start < 0 || end > plain.length() || start > end) {
+            throw new StringIndexOutOfBoundsException("start " + start + ", end " + end + ", length " + plain.length());
+        }
+
+        int[] offsets = this.offsets;
+        if (offsets == null) {
+            chew(true);
+            offsets = this.offsets;
+        }
+
+        if (offsets == NO_OFFSETS) {
+            return new AnsiString(encoded.subSequence(start, end));
+        }
+
+        return new AnsiString(encoded.subSequence(offsets[start], offsets[end]));
     }
 
     @Override
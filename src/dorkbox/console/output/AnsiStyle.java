@@ -0,0 +1,282 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.output;
+
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_BLINK_FAST;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_BLINK_OFF;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_BLINK_SLOW;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_BOLD;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_CONCEAL_OFF;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_CONCEAL_ON;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_DEFAULT_BG;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_DEFAULT_FG;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_FAINT;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_ITALIC;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_ITALIC_OFF;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_NEGATIVE_OFF;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_NEGATIVE_ON;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_NORMAL;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_RESET;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_STRIKETHROUGH_OFF;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_STRIKETHROUGH_ON;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_UNDERLINE;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_UNDERLINE_DOUBLE;
+import static dorkbox.console.output.AnsiOutputStream.ATTRIBUTE_UNDERLINE_OFF;
+
+/**
+ * The SGR (text attribute) state of the console: the foreground color, the background color and the enabled attributes.
+ * <p>
+ * Used by {@link Ansi} (when it tracks the style) to only write the options that actually change the style.
+ */
+final
+class AnsiStyle {
+    private static final int BOLD = 1;
+    private static final int FAINT = 1 << 1;
+    private static final int ITALIC = 1 << 2;
+    private static final int UNDERLINE = 1 << 3;
+    private static final int UNDERLINE_DOUBLE = 1 << 4;
+    private static final int BLINK_SLOW = 1 << 5;
+    private static final int BLINK_FAST = 1 << 6;
+    private static final int NEGATIVE = 1 << 7;
+    private static final int CONCEAL = 1 << 8;
+    private static final int STRIKETHROUGH = 1 << 9;
+
+    // attributes that are disabled by the same option
+    private static final int INTENSITY_GROUP = BOLD | FAINT;
+    private static final int UNDERLINE_GROUP = UNDERLINE | UNDERLINE_DOUBLE;
+    private static final int BLINK_GROUP = BLINK_SLOW | BLINK_FAST;
+
+    // the option that enables each attribute bit, in bit order
+    private static final int[] ENABLE_OPTIONS = {ATTRIBUTE_BOLD, ATTRIBUTE_FAINT, ATTRIBUTE_ITALIC, ATTRIBUTE_UNDERLINE,
+                                                 ATTRIBUTE_UNDERLINE_DOUBLE, ATTRIBUTE_BLINK_SLOW, ATTRIBUTE_BLINK_FAST,
+                                                 ATTRIBUTE_NEGATIVE_ON, ATTRIBUTE_CONCEAL_ON, ATTRIBUTE_STRIKETHROUGH_ON};
+
+    // the most options a delta can have: a reset, every attribute, and both colors
+    static final int MAX_DELTA_OPTIONS = 1 + 10 + 2;
+
+    // the SGR option of the color, or 0 for the default color
+    private int foreground = 0;
+    private int background = 0;
+    private int attributes = 0;
+
+    AnsiStyle() {
+    }
+
+    void set(final AnsiStyle style) {
+        foreground = style.foreground;
+        background = style.background;
+        attributes = style.attributes;
+    }
+
+    /**
+     * Resets to the default style
+     */
+    void reset() {
+        foreground = 0;
+        background = 0;
+        attributes = 0;
+    }
+
+    boolean isDefault() {
+        return foreground == 0 && background == 0 && attributes == 0;
+    }
+
+    boolean sameAs(final AnsiStyle style) {
+        return foreground == style.foreground && background == style.background && attributes == style.attributes;
+    }
+
+    /**
+     * Applies the SGR option to this style, the same way that the console would.
+     *
+     * @return false if the option is not one that can be tracked (the style is then unknown)
+     */
+    boolean apply(final int option) {
+        if ((30 <= option && option <= 37) || (90 <= option && option <= 97)) {
+            foreground = option;
+            return true;
+        }
+
+        if ((40 <= option && option <= 47) || (100 <= option && option <= 107)) {
+            background = option;
+            return true;
+        }
+
+        switch (option) {
+            case ATTRIBUTE_RESET:
+                reset();
+                return true;
+            case ATTRIBUTE_DEFAULT_FG:
+                foreground = 0;
+                return true;
+            case ATTRIBUTE_DEFAULT_BG:
+                background = 0;
+                return true;
+
+            case ATTRIBUTE_BOLD:
+                attributes |= BOLD;
+                return true;
+            case ATTRIBUTE_FAINT:
+                attributes |= FAINT;
+                return true;
+            case ATTRIBUTE_NORMAL:
+                attributes &= ~INTENSITY_GROUP;
+                return true;
+
+            case ATTRIBUTE_ITALIC:
+                attributes |= ITALIC;
+                return true;
+            case ATTRIBUTE_ITALIC_OFF:
+                attributes &= ~ITALIC;
+                return true;
+
+            case ATTRIBUTE_UNDERLINE:
+                attributes = (attributes & ~UNDERLINE_GROUP) | UNDERLINE;
+                return true;
+            case ATTRIBUTE_UNDERLINE_DOUBLE:
+                attributes = (attributes & ~UNDERLINE_GROUP) | UNDERLINE_DOUBLE;
+                return true;
+            case ATTRIBUTE_UNDERLINE_OFF:
+                attributes &= ~UNDERLINE_GROUP;
+                return true;
+
+            case ATTRIBUTE_BLINK_SLOW:
+                attributes = (attributes & ~BLINK_GROUP) | BLINK_SLOW;
+                return true;
+            case ATTRIBUTE_BLINK_FAST:
+                attributes = (attributes & ~BLINK_GROUP) | BLINK_FAST;
+                return true;
+            case ATTRIBUTE_BLINK_OFF:
+                attributes &= ~BLINK_GROUP;
+                return true;
+
+            case ATTRIBUTE_NEGATIVE_ON:
+                attributes |= NEGATIVE;
+                return true;
+            case ATTRIBUTE_NEGATIVE_OFF:
+                attributes &= ~NEGATIVE;
+                return true;
+
+            case ATTRIBUTE_CONCEAL_ON:
+                attributes |= CONCEAL;
+                return true;
+            case ATTRIBUTE_CONCEAL_OFF:
+                attributes &= ~CONCEAL;
+                return true;
+
+            case ATTRIBUTE_STRIKETHROUGH_ON:
+                attributes |= STRIKETHROUGH;
+                return true;
+            case ATTRIBUTE_STRIKETHROUGH_OFF:
+                attributes &= ~STRIKETHROUGH;
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Calculates the fewest SGR options that change the console from this style to the target style. This is either the options that
+     * disable/enable only what changed, or a reset followed by the entire target style (whichever is shorter).
+     *
+     * @param options where the options are written, must have space for {@link #MAX_DELTA_OPTIONS}
+     *
+     * @return the number of options, 0 if the styles are the same
+     */
+    int delta(final AnsiStyle target, final int[] options) {
+        if (sameAs(target)) {
+            return 0;
+        }
+
+        final int current = attributes;
+        final int wanted = target.attributes;
+        int count = 0;
+
+        // the options that only change what is different
+        int enable = wanted & ~current;
+
+        count = disable(current, wanted, INTENSITY_GROUP, ATTRIBUTE_NORMAL, options, count);
+        if ((current & ~wanted & INTENSITY_GROUP) != 0) {
+            // both bold and faint were disabled, so the one that is still wanted has to be enabled again
+            enable |= wanted & INTENSITY_GROUP;
+        }
+
+        // underline and blink can only be one kind at a time, so enabling the other kind replaces it
+        if ((wanted & UNDERLINE_GROUP) == 0) {
+            count = disable(current, wanted, UNDERLINE_GROUP, ATTRIBUTE_UNDERLINE_OFF, options, count);
+        }
+        if ((wanted & BLINK_GROUP) == 0) {
+            count = disable(current, wanted, BLINK_GROUP, ATTRIBUTE_BLINK_OFF, options, count);
+        }
+
+        count = disable(current, wanted, ITALIC, ATTRIBUTE_ITALIC_OFF, options, count);
+        count = disable(current, wanted, NEGATIVE, ATTRIBUTE_NEGATIVE_OFF, options, count);
+        count = disable(current, wanted, CONCEAL, ATTRIBUTE_CONCEAL_OFF, options, count);
+        count = disable(current, wanted, STRIKETHROUGH, ATTRIBUTE_STRIKETHROUGH_OFF, options, count);
+
+        count = enable(enable, options, count);
+
+        if (foreground != target.foreground) {
+            options[count++] = target.foreground == 0 ? ATTRIBUTE_DEFAULT_FG : target.foreground;
+        }
+        if (background != target.background) {
+            options[count++] = target.background == 0 ? ATTRIBUTE_DEFAULT_BG : target.background;
+        }
+
+        // a reset followed by the entire target style
+        int resetCount = 1 + Integer.bitCount(wanted);
+        if (target.foreground != 0) {
+            resetCount++;
+        }
+        if (target.background != 0) {
+            resetCount++;
+        }
+
+        // a lone reset is the shortest escape sequence there is
+        if (resetCount < count || target.isDefault()) {
+            count = 0;
+            options[count++] = ATTRIBUTE_RESET;
+            count = enable(wanted, options, count);
+
+            if (target.foreground != 0) {
+                options[count++] = target.foreground;
+            }
+            if (target.background != 0) {
+                options[count++] = target.background;
+            }
+        }
+
+        return count;
+    }
+
+    private static
+    int disable(final int current, final int wanted, final int mask, final int option, final int[] options, int count) {
+        if ((current & ~wanted & mask) != 0) {
+            options[count++] = option;
+        }
+        return count;
+    }
+
+    private static
+    int enable(final int attributes, final int[] options, int count) {
+        for (int i = 0; i < ENABLE_OPTIONS.length; i++) {
+            if ((attributes & (1 << i)) != 0) {
+                options[count++] = ENABLE_OPTIONS[i];
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.output;
+
+/**
+ * A "@|code text|@" markup string that was parsed once by {@link AnsiRenderer#compile(String)}, so that rendering it again does not
+ * have to parse the markup (or look up the code names) again.
+ * <p>
+ * This is immutable, and safe to share between threads.
+ */
+public final
+class AnsiTemplate {
+    private final String template;
+
+    // the text of each segment, and the codes that style it (null when the text is not styled)
+    private final String[] texts;
+    private final AnsiCodeMap[][] codes;
+
+    private final String rendered;
+
+    AnsiTemplate(final String template, final String[] texts, final AnsiCodeMap[][] codes) {
+        this.template = template;
+        this.texts = texts;
+        this.codes = codes;
+
+        if (codes.length == 1 && codes[0] == null) {
+            // there is no markup at all
+            this.rendered = texts[0];
+        }
+        else {
+            this.rendered = appendTo(Ansi.ansi()).toString();
+        }
+    }
+
+    /**
+     * @return the markup that this template was compiled from
+     */
+    public
+    String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return the text, with the code names replaced by their ANSI escape sequences
+     */
+    public
+    String render() {
+        return rendered;
+    }
+
+    /**
+     * String formats the rendered text with the supplied arguments.
+     */
+    public
+    String format(final Object... args) {
+        return String.format(rendered, args);
+    }
+
+    /**
+     * Appends the text, and the attributes of each code name, to the Ansi object. Unlike appending the rendered text, the attributes
+     * are combined with the attributes of the Ansi object (and are tracked when it tracks the style).
+     *
+     * @return the Ansi object
+     */
+    public
+    Ansi appendTo(final Ansi ansi) {
+        final String[] texts = this.texts;
+        final AnsiCodeMap[][] codes = this.codes;
+
+        for (int i = 0; i < texts.length; i++) {
+            final AnsiCodeMap[] segmentCodes = codes[i];
+
+            if (segmentCodes == null) {
+                ansi.a(texts[i]);
+            }
+            else {
+                for (AnsiCodeMap code : segmentCodes) {
+                    AnsiRenderer.render(ansi, code);
+                }
+                ansi.a(texts[i])
+                    .reset();
+            }
+        }
+
+        return ansi;
+    }
+
+    @Override
+    public
+    String toString() {
+        return rendered;
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An output stream that only copies the written bytes into a bounded ring buffer, and uses a single background thread to write them
+ * (in large chunks) to the wrapped stream. A slow console (or a full pipe) then no longer stalls the threads that are writing output.
+ * <p>
+ * Writers claim space in the ring buffer with a CAS, copy their bytes, and then publish them in the same order they were claimed, so
+ * the output of a single write is never split up or interleaved with another write.
+ */
+final
+class AsyncOutputStream extends OutputStream {
+    /**
+     * Wait until there is space in the buffer
+     */
+    static final int OVERFLOW_BLOCK = 0;
+
+    /**
+     * Discard the output that does not fit in the buffer
+     */
+    static final int OVERFLOW_DROP = 1;
+
+    /**
+     * Discard the output that does not fit in the buffer, and (once there is space again) write a single notice with the amount of
+     * output that was discarded.
+     */
+    static final int OVERFLOW_COALESCE = 2;
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final String NEW_LINE = System.getProperty("line.separator");
+
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    // the longest that flush() waits for the output to be written
+    static final long FLUSH_TIMEOUT_MILLIS = 2000L;
+
+    private final OutputStream out;
+    private final int overflowPolicy;
+
+    private final byte[] ring;
+    private final int mask;
+
+    // the next free position in the ring buffer (claimed by a writer, but not necessarily published yet)
+    private final AtomicLong claimed = new AtomicLong();
+
+    // everything before this position has been copied into the ring buffer, and can be written out
+    private final AtomicLong published = new AtomicLong();
+
+    // everything before this position has been written to the wrapped stream
+    private volatile long consumed = 0L;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread writerThread;
+    private volatile boolean writerParked = false;
+    private volatile boolean closed = false;
+
+    /**
+     * @param out the stream that the background thread writes to
+     * @param size the size (in bytes) of the ring buffer, rounded up to the next power of 2
+     * @param overflowPolicy what to do when the buffer is full. One of "BLOCK", "DROP" or "COALESCE"
+     * @param name used to name the background thread
+     */
+    AsyncOutputStream(final OutputStream out, final int size, final String overflowPolicy, final String name) {
+        this.out = out;
+        this.overflowPolicy = parseOverflowPolicy(overflowPolicy);
+
+        int capacity = 1024;
+        while (capacity < size && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+
+        this.ring = new byte[capacity];
+        this.mask = capacity - 1;
+
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public
+            void run() {
+                drainLoop();
+            }
+        });
+        writerThread.setDaemon(true);
+        writerThread.setName("Console ANSI stream Writer (" + name + ")");
+        writerThread.start();
+    }
+
+    private static
+    int parseOverflowPolicy(final String overflowPolicy) {
+        String type = overflowPolicy.toUpperCase(Locale.ENGLISH);
+
+        if (type.equals("DROP")) {
+            return OVERFLOW_DROP;
+        }
+        else if (type.equals("COALESCE")) {
+            return OVERFLOW_COALESCE;
+        }
+        else {
+            return OVERFLOW_BLOCK;
+        }
+    }
+
+    @Override
+    public
+    void write(final int b) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+
+        final long start = claim(1);
+        if (start != -1L) {
+            ring[(int) (start & mask)] = (byte) b;
+            publish(start, 1);
+        }
+    }
+
+    @Override
+    public
+    void write(final byte[] bytes, int offset, int length) throws IOException {
+        if ((offset | length | (bytes.length - (length + offset)) | (offset + length)) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (closed) {
+            // the wrapped stream is closed as well
+            throw new IOException("Stream closed");
+        }
+
+        // writes that are larger than the entire buffer have to be split up
+        final int capacity = ring.length;
+        while (length > capacity) {
+            writeChunk(bytes, offset, capacity);
+            offset += capacity;
+            length -= capacity;
+        }
+
+        if (length > 0) {
+            writeChunk(bytes, offset, length);
+        }
+    }
+
+    private
+    void writeChunk(final byte[] bytes, final int offset, final int length) {
+        final long start = claim(length);
+        if (start == -1L) {
+            return;
+        }
+
+        final int capacity = ring.length;
+        final int index = (int) (start & mask);
+        final int firstLength = Math.min(length, capacity - index);
+
+        System.arraycopy(bytes, offset, ring, index, firstLength);
+        if (firstLength < length) {
+            System.arraycopy(bytes, offset + firstLength, ring, 0, length - firstLength);
+        }
+
+        publish(start, length);
+    }
+
+    /**
+     * Claims space in the ring buffer, and applies the overflow policy when there is not enough space.
+     *
+     * @return the position of the claimed space, or -1 if the output was discarded
+     */
+    private
+    long claim(final int length) {
+        final int capacity = ring.length;
+
+        while (true) {
+            final long start = claimed.get();
+
+            if (start + length - consumed <= capacity) {
+                if (claimed.compareAndSet(start, start + length)) {
+                    return start;
+                }
+            }
+            else if (overflowPolicy != OVERFLOW_BLOCK || closed) {
+                dropped.addAndGet(length);
+                return -1L;
+            }
+            else {
+                // the background writer will make space as it writes
+                wakeWriter();
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+        }
+    }
+
+    private
+    void publish(final long start, final int length) {
+        // publish in the same order as the space was claimed. Earlier writers are only ever busy copying their bytes.
+        while (published.get() != start) {
+            Thread.yield();
+        }
+        published.set(start + length);
+
+        wakeWriter();
+    }
+
+    private
+    void wakeWriter() {
+        if (writerParked) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Runs on the background thread, and writes everything that was published to the wrapped stream.
+     */
+    private
+    void drainLoop() {
+        final int capacity = ring.length;
+
+        while (true) {
+            final long head = consumed;
+            final long tail = published.get();
+
+            if (head == tail) {
+                if (claimed.get() != head) {
+                    // a writer is still copying its bytes into the buffer
+                    Thread.yield();
+                    continue;
+                }
+
+                try {
+                    synchronized (out) {
+                        writeDroppedNotice();
+                        out.flush();
+                    }
+                } catch (IOException ignored) {
+                }
+
+                if (closed && claimed.get() == head) {
+                    return;
+                }
+
+                writerParked = true;
+                if (published.get() == head && !closed) {
+                    LockSupport.park(this);
+                }
+                writerParked = false;
+                continue;
+            }
+
+            final int index = (int) (head & mask);
+            final int length = (int) (tail - head);
+            final int firstLength = Math.min(length, capacity - index);
+
+            try {
+                synchronized (out) {
+                    out.write(ring, index, firstLength);
+                    if (firstLength < length) {
+                        out.write(ring, 0, length - firstLength);
+                    }
+                }
+            } catch (IOException ignored) {
+                // there is nowhere to report this (the console IS where it would be reported), so the output is discarded.
+            }
+
+            // frees up the space for the writers
+            consumed = tail;
+        }
+    }
+
+    private
+    void writeDroppedNotice() throws IOException {
+        if (overflowPolicy != OVERFLOW_COALESCE) {
+            return;
+        }
+
+        long droppedBytes = dropped.getAndSet(0L);
+        if (droppedBytes > 0) {
+            String notice = NEW_LINE + "[console output buffer full: " + droppedBytes + " bytes discarded]" + NEW_LINE;
+            out.write(notice.getBytes(CHARSET));
+        }
+    }
+
+    /**
+     * @return the number of bytes that were discarded because the buffer was full.
+     */
+    long getDroppedBytes() {
+        return dropped.get();
+    }
+
+    /**
+     * Waits until everything that was written before this call is written (and flushed) to the wrapped stream, but at most for
+     * {@link #FLUSH_TIMEOUT_MILLIS} (so that a stalled console cannot block the caller forever).
+     */
+    @Override
+    public
+    void flush() throws IOException {
+        flush(FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Waits until everything that was written before this call is written (and flushed) to the wrapped stream.
+     *
+     * @return true if the output was flushed before the timeout elapsed
+     */
+    boolean flush(final long timeout, final TimeUnit unit) throws IOException {
+        if (closed) {
+            return true;
+        }
+
+        final long target = published.get();
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        while (consumed < target) {
+            if (!writerThread.isAlive() || System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(this, PARK_NANOS);
+        }
+
+        synchronized (out) {
+            writeDroppedNotice();
+            out.flush();
+        }
+        return true;
+    }
+
+    /**
+     * Writes everything that is still buffered, stops the background thread and closes the wrapped stream.
+     */
+    @Override
+    public
+    void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        LockSupport.unpark(writerThread);
+
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (out) {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.output;
+
+/**
+ * Precomputed SGR (text attribute) escape sequences, so that styling text does not have to format numbers.
+ * <p>
+ * Every SGR option (0-107) has its digits and its complete escape sequence precomputed, and sequences that combine several options
+ * (ie: a foreground + background color + bold) are cached once they are used.
+ */
+final
+class EscapeCodes {
+    static final char FIRST_ESC_CHAR = 27;
+    static final char SECOND_ESC_CHAR = '[';
+
+    // the largest SGR option is 107 (bright white background)
+    private static final int TABLE_SIZE = 108;
+
+    private static final char[][] OPTION_CHARS = new char[TABLE_SIZE][];
+    private static final Sequence[] SEQUENCES = new Sequence[TABLE_SIZE];
+
+    // combined sequences of up to 4 options. Direct mapped, so a different combination with the same hash replaces the previous one.
+    private static final int MAX_COMBINED_OPTIONS = 4;
+    private static final int COMBINED_CACHE_SIZE = 512;
+    private static final Sequence[] COMBINED_CACHE = new Sequence[COMBINED_CACHE_SIZE];
+
+    static {
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            OPTION_CHARS[i] = Integer.toString(i).toCharArray();
+
+            if (i == AnsiOutputStream.ATTRIBUTE_RESET) {
+                // a single reset is written without the option, since it is the default
+                SEQUENCES[i] = new Sequence(i, new char[] {FIRST_ESC_CHAR, SECOND_ESC_CHAR, AnsiOutputStream.TEXT_ATTRIBUTE});
+            }
+            else {
+                SEQUENCES[i] = new Sequence(i, sequence(OPTION_CHARS[i]));
+            }
+        }
+    }
+
+    /**
+     * A complete escape sequence, as chars and as (ASCII) bytes. This is immutable, so that it is safe to publish without synchronization.
+     */
+    static final
+    class Sequence {
+        private final int key;
+        final char[] chars;
+        final byte[] bytes;
+
+        private
+        Sequence(final int key, final char[] chars) {
+            this.key = key;
+            this.chars = chars;
+            this.bytes = toBytes(chars);
+        }
+    }
+
+    private
+    EscapeCodes() {
+    }
+
+    /**
+     * @return the digits of the SGR option, or null if it is not a known option
+     */
+    static
+    char[] optionChars(final int option) {
+        if (option < 0 || option >= TABLE_SIZE) {
+            return null;
+        }
+        return OPTION_CHARS[option];
+    }
+
+    /**
+     * @return the complete escape sequence for the SGR option, or null if it is not a known option
+     */
+    static
+    Sequence sequence(final int option) {
+        if (option < 0 || option >= TABLE_SIZE) {
+            return null;
+        }
+        return SEQUENCES[option];
+    }
+
+    /**
+     * @return the complete escape sequence that combines the SGR options, or null if they cannot be combined from the cache
+     */
+    static
+    Sequence sequence(final int[] options, final int count) {
+        if (count == 1) {
+            return sequence(options[0]);
+        }
+
+        if (count == 0 || count > MAX_COMBINED_OPTIONS) {
+            return null;
+        }
+
+        // 7 bits per option (they are all < 128) + the count
+        int key = count;
+        for (int i = 0; i < count; i++) {
+            final int option = options[i];
+            if (option < 0 || option >= TABLE_SIZE) {
+                return null;
+            }
+            key = (key << 7) | option;
+        }
+
+        final int index = (key ^ (key >>> 9) ^ (key >>> 18)) & (COMBINED_CACHE_SIZE - 1);
+        Sequence sequence = COMBINED_CACHE[index];
+
+        if (sequence == null || sequence.key != key) {
+            int length = count - 1; // the ';' separators
+            for (int i = 0; i < count; i++) {
+                length += OPTION_CHARS[options[i]].length;
+            }
+
+            final char[] optionChars = new char[length];
+            int position = 0;
+            for (int i = 0; i < count; i++) {
+                if (i != 0) {
+                    optionChars[position++] = ';';
+                }
+
+                final char[] chars = OPTION_CHARS[options[i]];
+                System.arraycopy(chars, 0, optionChars, position, chars.length);
+                position += chars.length;
+            }
+
+            sequence = new Sequence(key, sequence(optionChars));
+            COMBINED_CACHE[index] = sequence;
+        }
+
+        return sequence;
+    }
+
+    /**
+     * @return ESC [ options m
+     */
+    private static
+    char[] sequence(final char[] options) {
+        final char[] chars = new char[options.length + 3];
+        chars[0] = FIRST_ESC_CHAR;
+        chars[1] = SECOND_ESC_CHAR;
+        System.arraycopy(options, 0, chars, 2, options.length);
+        chars[chars.length - 1] = AnsiOutputStream.TEXT_ATTRIBUTE;
+        return chars;
+    }
+
+    /**
+     * Escape sequences are always ASCII
+     */
+    private static
+    byte[] toBytes(final char[] chars) {
+        final byte[] bytes = new byte[chars.length];
+        for (int i = 0; i < chars.length; i++) {
+            bytes[i] = (byte) chars[i];
+        }
+        return bytes;
+    }
+}
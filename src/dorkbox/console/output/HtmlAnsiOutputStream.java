@@ -34,15 +34,25 @@ package dorkbox.console.output;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 
 /**
+ * Converts the ANSI escape sequences into html tags, and escapes the characters that have a special meaning in html.
+ * <p>
+ * By default, every color and attribute is a nested tag with an inline style. When using css classes instead, every run of text with
+ * the same style is a single {@code <span class="fg-red b">}, and the classes are defined by {@link #stylesheet()}. Truecolor colors do
+ * not have a class, and are still an inline style.
+ * <p>
+ * Every tag is precomputed as bytes, and the text between the escape sequences is copied in bulk (only the bytes that must be escaped
+ * are replaced).
+ *
  * @author dorkbox, llc
  * @author <a href="http://code.dblock.org">Daniel Doubrovkine</a>
  */
 public
 class HtmlAnsiOutputStream extends AnsiOutputStream {
+    private static final Charset CHARSET = Charset.forName("UTF-8");
 
     private static final String ANSI_COLOR_MAP[];
 
@@ -58,74 +68,427 @@ class HtmlAnsiOutputStream extends AnsiOutputStream {
         ANSI_COLOR_MAP[WHITE]   = "white";
     }
 
-    private static final byte[] BYTES_QUOT = "&quot;".getBytes();
-    private static final byte[] BYTES_AMP = "&amp;".getBytes();
-    private static final byte[] BYTES_LT = "&lt;".getBytes();
-    private static final byte[] BYTES_GT = "&gt;".getBytes();
+    // the bright versions of the 8 colors (palette index 8-15)
+    private static final int[] BRIGHT_COLORS = new int[] {0x555555, 0xFF5555, 0x55FF55, 0xFFFF55, 0x5555FF, 0xFF55FF, 0x55FFFF, 0xFFFFFF};
+
+    // the levels of the 6x6x6 color cube (palette index 16-231)
+    private static final int[] CUBE_LEVELS = new int[] {0x00, 0x5F, 0x87, 0xAF, 0xD7, 0xFF};
+
+    // a color is either a palette index (0-255), a truecolor (with this flag), or the default color
+    private static final int DEFAULT_COLOR = -1;
+    private static final int INVERSE_COLOR = -2;
+    private static final int RGB_FLAG = 1 << 24;
+
+    // the attributes that are tracked when using css classes
+    private static final int BOLD = 1;
+    private static final int FAINT = 1 << 1;
+    private static final int ITALIC = 1 << 2;
+    private static final int UNDERLINE = 1 << 3;
+    private static final int BLINK = 1 << 4;
+    private static final int CONCEAL = 1 << 5;
+    private static final int STRIKETHROUGH = 1 << 6;
+    private static final int NEGATIVE = 1 << 7;
+
+    private static final String[] ATTRIBUTE_CLASS_NAMES = new String[] {"b", "f", "i", "u", "blink", "conceal", "s"};
+
+    // the replacement for every (ascii) byte that must be escaped, null if the byte is copied as-is
+    private static final byte[][] ESCAPED = new byte[128][];
+
+    static {
+        ESCAPED['"'] = bytes("&quot;");
+        ESCAPED['&'] = bytes("&amp;");
+        ESCAPED['<'] = bytes("&lt;");
+        ESCAPED['>'] = bytes("&gt;");
+    }
+
+    private static final byte[][] FOREGROUND_TAGS = new byte[256][];
+    private static final byte[][] BACKGROUND_TAGS = new byte[256][];
+
+    private static final byte[][] FOREGROUND_CLASSES = new byte[256][];
+    private static final byte[][] BACKGROUND_CLASSES = new byte[256][];
+    private static final byte[][] ATTRIBUTE_CLASSES = new byte[ATTRIBUTE_CLASS_NAMES.length][];
+
+    static {
+        for (int index = 0; index < 256; index++) {
+            String color = cssColor(index);
+            FOREGROUND_TAGS[index] = bytes("<span style=\"color: " + color + ";\">");
+            BACKGROUND_TAGS[index] = bytes("<span style=\"background-color: " + color + ";\">");
+
+            FOREGROUND_CLASSES[index] = bytes("fg-" + className(index));
+            BACKGROUND_CLASSES[index] = bytes("bg-" + className(index));
+        }
+
+        for (int i = 0; i < ATTRIBUTE_CLASS_NAMES.length; i++) {
+            ATTRIBUTE_CLASSES[i] = bytes(ATTRIBUTE_CLASS_NAMES[i]);
+        }
+    }
+
+    private static final byte[] FOREGROUND_INVERSE_CLASS = bytes("fg-inverse");
+    private static final byte[] BACKGROUND_INVERSE_CLASS = bytes("bg-inverse");
+
+    private static final byte[] BOLD_TAG = bytes("<b>");
+    private static final byte[] UNDERLINE_TAG = bytes("<u>");
+
+    private static final byte[] CLOSE_SPAN_TAG = bytes("</span>");
+    private static final byte[] CLOSE_BOLD_TAG = bytes("</b>");
+    private static final byte[] CLOSE_UNDERLINE_TAG = bytes("</u>");
+
+    private static final byte[] SPAN_CLASS = bytes("<span class=\"");
+    private static final byte[] SPAN_STYLE = bytes("<span style=\"");
+    private static final byte[] STYLE = bytes(" style=\"");
+    private static final byte[] STYLE_COLOR = bytes("color: #");
+    private static final byte[] STYLE_BACKGROUND_COLOR = bytes("background-color: #");
+
+    private static final byte[] CONCEAL_ON = bytes("\u001B[8m");
+    private static final byte[] RESET = bytes("\u001B[0m");
+
+    private static final byte[] HEX = bytes("0123456789abcdef");
+
+    private static
+    byte[] bytes(final String s) {
+        return s.getBytes(CHARSET);
+    }
+
+    /**
+     * @return the rgb value of a color from the 256 color palette (the first 8 colors are the css named colors instead)
+     */
+    private static
+    int paletteColor(final int index) {
+        if (index < 16) {
+            return BRIGHT_COLORS[index - 8];
+        }
+        if (index < 232) {
+            int cube = index - 16;
+            return CUBE_LEVELS[cube / 36] << 16 | CUBE_LEVELS[cube / 6 % 6] << 8 | CUBE_LEVELS[cube % 6];
+        }
+
+        int gray = 8 + (index - 232) * 10;
+        return gray << 16 | gray << 8 | gray;
+    }
+
+    private static
+    String cssColor(final int index) {
+        if (index < 8) {
+            return ANSI_COLOR_MAP[index];
+        }
+
+        return String.format("#%06x", paletteColor(index));
+    }
+
+    private static
+    String className(final int index) {
+        if (index < 8) {
+            return ANSI_COLOR_MAP[index];
+        }
+        if (index < 16) {
+            return "bright-" + ANSI_COLOR_MAP[index - 8];
+        }
+
+        return Integer.toString(index);
+    }
+
+    /**
+     * @return the css rules for all the classes that are used when converting to css classes. The inverse classes are used for the
+     *         default colors when the colors are swapped (SGR 7), and assume dark text on a light background.
+     */
+    public static
+    String stylesheet() {
+        StringBuilder css = new StringBuilder(16384);
+
+        for (int index = 0; index < 256; index++) {
+            css.append(".fg-").append(className(index)).append(" { color: ").append(cssColor(index)).append("; }\n");
+        }
+        for (int index = 0; index < 256; index++) {
+            css.append(".bg-").append(className(index)).append(" { background-color: ").append(cssColor(index)).append("; }\n");
+        }
+
+        css.append(".fg-inverse { color: white; }\n")
+           .append(".bg-inverse { background-color: black; }\n")
+           .append(".b { font-weight: bold; }\n")
+           .append(".f { opacity: 0.5; }\n")
+           .append(".i { font-style: italic; }\n")
+           .append(".u { text-decoration: underline; }\n")
+           .append(".s { text-decoration: line-through; }\n")
+           .append(".u.s { text-decoration: underline line-through; }\n")
+           .append(".blink { animation: blink 1s step-end infinite; }\n")
+           .append("@keyframes blink { 50% { visibility: hidden; } }\n")
+           .append(".conceal { visibility: hidden; }\n");
+
+        return css.toString();
+    }
+
+
+    private final boolean useClasses;
 
     private boolean concealOn = false;
-    private List<String> closingAttributes = new ArrayList<String>();
 
+    // the opening and closing tags for every open tag, in the order they were opened
+    private byte[][] openingTags = new byte[8][];
+    private byte[][] closingTags = new byte[8][];
+    private int tagCount = 0;
+
+    // true when the open tags were closed at the end of a chunk, and have to be opened again before the next text
+    private boolean reopenTags = false;
+
+    // the current style, and the style of the open span, when using css classes
+    private int foreground = DEFAULT_COLOR;
+    private int background = DEFAULT_COLOR;
+    private int attributes = 0;
+
+    private boolean spanOpen = false;
+    private int spanForeground;
+    private int spanBackground;
+    private int spanAttributes;
+
+    private final byte[] span;
+    private int spanLength;
+
+    // the bytes of an incomplete UTF-8 character at the end of the previous chunk
+    private final byte[] pendingBytes = new byte[4];
+    private int pendingCount = 0;
+
+    /**
+     * Converts to nested tags with inline styles.
+     */
     public
     HtmlAnsiOutputStream(OutputStream os) {
+        this(os, false);
+    }
+
+    /**
+     * @param useClasses true to convert to a single span (with css classes) for every run of text with the same style, or false to
+     *                   convert to nested tags with inline styles.
+     */
+    public
+    HtmlAnsiOutputStream(final OutputStream os, final boolean useClasses) {
         super(os);
+        this.useClasses = useClasses;
+
+        // large enough for every class, and both truecolor styles
+        this.span = useClasses ? new byte[256] : null;
     }
 
     private
-    void write(String s) throws IOException {
-        super.out.write(s.getBytes());
+    void writeTag(final byte[] openTag, final byte[] closeTag) throws IOException {
+        reopenTags();
+        out.write(openTag);
+
+        if (tagCount == closingTags.length) {
+            openingTags = Arrays.copyOf(openingTags, tagCount << 1);
+            closingTags = Arrays.copyOf(closingTags, tagCount << 1);
+        }
+        openingTags[tagCount] = openTag;
+        closingTags[tagCount] = closeTag;
+        tagCount++;
     }
 
     private
-    void writeAttribute(String s) throws IOException {
-        write("<" + s + ">");
-        closingAttributes.add(0, s.split(" ", 2)[0]);
+    void reopenTags() throws IOException {
+        if (reopenTags) {
+            reopenTags = false;
+            for (int i = 0; i < tagCount; i++) {
+                out.write(openingTags[i]);
+            }
+        }
     }
 
     private
     void closeAttributes() throws IOException {
-        for (String attr : closingAttributes) {
-            write("</" + attr + ">");
+        while (tagCount > 0) {
+            tagCount--;
+            if (!reopenTags) {
+                out.write(closingTags[tagCount]);
+            }
+            openingTags[tagCount] = null;
+            closingTags[tagCount] = null;
         }
-        closingAttributes.clear();
+
+        reopenTags = false;
     }
 
-    public
-    void write(int data) throws IOException {
-        switch (data) {
-            case 34: // "
-                out.write(BYTES_QUOT);
-                break;
-            case 38: // &
-                out.write(BYTES_AMP);
-                break;
-            case 60: // <
-                out.write(BYTES_LT);
-                break;
-            case 62: // >
-                out.write(BYTES_GT);
-                break;
-            default:
-                super.write(data);
+    /**
+     * Makes sure the open tags (or span) match the current style, before any text is written.
+     */
+    private
+    void beforeText() throws IOException {
+        if (!useClasses) {
+            reopenTags();
+            return;
+        }
+
+        if (spanOpen && spanForeground == foreground && spanBackground == background && spanAttributes == attributes) {
+            return;
+        }
+
+        closeSpan();
+
+        if (foreground != DEFAULT_COLOR || background != DEFAULT_COLOR || attributes != 0) {
+            openSpan();
+        }
+    }
+
+    private
+    void openSpan() throws IOException {
+        int fg = foreground;
+        int bg = background;
+
+        if ((attributes & NEGATIVE) != 0) {
+            fg = background == DEFAULT_COLOR ? INVERSE_COLOR : background;
+            bg = foreground == DEFAULT_COLOR ? INVERSE_COLOR : foreground;
+        }
+
+        spanLength = 0;
+        boolean hasClass = false;
+
+        if (fg == INVERSE_COLOR) {
+            hasClass = appendClass(hasClass, FOREGROUND_INVERSE_CLASS);
+        }
+        else if (fg >= 0 && fg < RGB_FLAG) {
+            hasClass = appendClass(hasClass, FOREGROUND_CLASSES[fg]);
+        }
+        if (bg == INVERSE_COLOR) {
+            hasClass = appendClass(hasClass, BACKGROUND_INVERSE_CLASS);
+        }
+        else if (bg >= 0 && bg < RGB_FLAG) {
+            hasClass = appendClass(hasClass, BACKGROUND_CLASSES[bg]);
+        }
+        for (int i = 0; i < ATTRIBUTE_CLASSES.length; i++) {
+            if ((attributes & (1 << i)) != 0) {
+                hasClass = appendClass(hasClass, ATTRIBUTE_CLASSES[i]);
+            }
+        }
+
+        boolean hasStyle = false;
+        if (fg >= RGB_FLAG) {
+            hasStyle = appendStyle(hasClass, hasStyle, STYLE_COLOR, fg);
+        }
+        if (bg >= RGB_FLAG) {
+            hasStyle = appendStyle(hasClass, hasStyle, STYLE_BACKGROUND_COLOR, bg);
+        }
+
+        span[spanLength++] = '"';
+        span[spanLength++] = '>';
+        out.write(span, 0, spanLength);
+
+        spanOpen = true;
+        spanForeground = foreground;
+        spanBackground = background;
+        spanAttributes = attributes;
+    }
+
+    private
+    boolean appendClass(final boolean hasClass, final byte[] name) {
+        if (hasClass) {
+            span[spanLength++] = ' ';
+        }
+        else {
+            append(SPAN_CLASS);
+        }
+
+        append(name);
+        return true;
+    }
+
+    private
+    boolean appendStyle(final boolean hasClass, final boolean hasStyle, final byte[] property, final int color) {
+        if (hasStyle) {
+            span[spanLength++] = ' ';
+        }
+        else if (hasClass) {
+            span[spanLength++] = '"';
+            append(STYLE);
+        }
+        else {
+            append(SPAN_STYLE);
+        }
+
+        append(property);
+        for (int shift = 20; shift >= 0; shift -= 4) {
+            span[spanLength++] = HEX[(color >> shift) & 0xF];
+        }
+        span[spanLength++] = ';';
+        return true;
+    }
+
+    private
+    void append(final byte[] bytes) {
+        System.arraycopy(bytes, 0, span, spanLength, bytes.length);
+        spanLength += bytes.length;
+    }
+
+    private
+    void closeSpan() throws IOException {
+        if (spanOpen) {
+            spanOpen = false;
+            out.write(CLOSE_SPAN_TAG);
+        }
+    }
+
+    @Override
+    protected
+    void writeText(final int data) throws IOException {
+        beforeText();
+
+        final byte[] escaped = data >= 0 && data < 128 ? ESCAPED[data] : null;
+
+        if (escaped != null) {
+            out.write(escaped);
+        }
+        else {
+            out.write(data);
+        }
+    }
+
+    @Override
+    protected
+    void writeText(final byte[] bytes, final int offset, final int length) throws IOException {
+        beforeText();
+
+        final int end = offset + length;
+        int start = offset;
+
+        for (int i = offset; i < end; i++) {
+            final int b = bytes[i];
+
+            // UTF-8 multi-byte sequences are negative, and never have to be escaped
+            if (b >= 0) {
+                final byte[] escaped = ESCAPED[b];
+                if (escaped != null) {
+                    if (i > start) {
+                        out.write(bytes, start, i - start);
+                    }
+                    out.write(escaped);
+                    start = i + 1;
+                }
+            }
+        }
+
+        if (end > start) {
+            out.write(bytes, start, end - start);
         }
     }
 
     @Override
     protected
     void processSetAttribute(int attribute) throws IOException {
+        if (useClasses) {
+            setClassAttribute(attribute);
+            return;
+        }
+
         switch (attribute) {
             case ATTRIBUTE_CONCEAL_ON:
-                write("\u001B[8m");
+                out.write(CONCEAL_ON);
                 concealOn = true;
                 break;
             case ATTRIBUTE_BOLD:
-                writeAttribute("b");
+                writeTag(BOLD_TAG, CLOSE_BOLD_TAG);
                 break;
             case ATTRIBUTE_NORMAL:
                 closeAttributes();
                 break;
             case ATTRIBUTE_UNDERLINE:
-                writeAttribute("u");
+                writeTag(UNDERLINE_TAG, CLOSE_UNDERLINE_TAG);
                 break;
             case  ATTRIBUTE_UNDERLINE_OFF:
                 closeAttributes();
@@ -137,38 +500,294 @@ class HtmlAnsiOutputStream extends AnsiOutputStream {
         }
     }
 
+    private
+    void setClassAttribute(final int attribute) {
+        switch (attribute) {
+            case ATTRIBUTE_BOLD:
+                attributes |= BOLD;
+                break;
+            case ATTRIBUTE_FAINT:
+                attributes |= FAINT;
+                break;
+            case ATTRIBUTE_ITALIC:
+                attributes |= ITALIC;
+                break;
+            case ATTRIBUTE_UNDERLINE:
+            case ATTRIBUTE_UNDERLINE_DOUBLE:
+                attributes |= UNDERLINE;
+                break;
+            case ATTRIBUTE_BLINK_SLOW:
+            case ATTRIBUTE_BLINK_FAST:
+                attributes |= BLINK;
+                break;
+            case ATTRIBUTE_NEGATIVE_ON:
+                attributes |= NEGATIVE;
+                break;
+            case ATTRIBUTE_CONCEAL_ON:
+                attributes |= CONCEAL;
+                break;
+            case ATTRIBUTE_STRIKETHROUGH_ON:
+                attributes |= STRIKETHROUGH;
+                break;
+            case ATTRIBUTE_NORMAL:
+                attributes &= ~(BOLD | FAINT);
+                break;
+            case ATTRIBUTE_ITALIC_OFF:
+                attributes &= ~ITALIC;
+                break;
+            case ATTRIBUTE_UNDERLINE_OFF:
+                attributes &= ~UNDERLINE;
+                break;
+            case ATTRIBUTE_BLINK_OFF:
+                attributes &= ~BLINK;
+                break;
+            case ATTRIBUTE_NEGATIVE_OFF:
+                attributes &= ~NEGATIVE;
+                break;
+            case ATTRIBUTE_CONCEAL_OFF:
+                attributes &= ~CONCEAL;
+                break;
+            case ATTRIBUTE_STRIKETHROUGH_OFF:
+                attributes &= ~STRIKETHROUGH;
+                break;
+        }
+    }
+
+    private
+    void setForeground(final int color) throws IOException {
+        if (useClasses) {
+            foreground = color;
+        }
+        else if (color < RGB_FLAG) {
+            writeTag(FOREGROUND_TAGS[color], CLOSE_SPAN_TAG);
+        }
+        else {
+            writeTag(bytes("<span style=\"color: #" + hex(color) + ";\">"), CLOSE_SPAN_TAG);
+        }
+    }
+
+    private
+    void setBackground(final int color) throws IOException {
+        if (useClasses) {
+            background = color;
+        }
+        else if (color < RGB_FLAG) {
+            writeTag(BACKGROUND_TAGS[color], CLOSE_SPAN_TAG);
+        }
+        else {
+            writeTag(bytes("<span style=\"background-color: #" + hex(color) + ";\">"), CLOSE_SPAN_TAG);
+        }
+    }
+
+    private static
+    String hex(final int rgb) {
+        char[] chars = new char[6];
+        for (int i = 0; i < 6; i++) {
+            chars[i] = (char) HEX[(rgb >> (20 - i * 4)) & 0xF];
+        }
+        return new String(chars);
+    }
+
     @Override
     protected
     void processSetForegroundColor(final int color) throws IOException {
-        writeAttribute("span style=\"color: " + ANSI_COLOR_MAP[color] + ";\"");
+        setForeground(color);
+    }
+
+    @Override
+    protected
+    void processSetForegroundColor(final int color, final boolean bright) throws IOException {
+        setForeground(bright ? color + 8 : color);
+    }
+
+    @Override
+    protected
+    void processSetForegroundColorExt(final int paletteIndex) throws IOException {
+        setForeground(paletteIndex);
+    }
+
+    @Override
+    protected
+    void processSetForegroundColorExt(final int r, final int g, final int b) throws IOException {
+        setForeground(RGB_FLAG | r << 16 | g << 8 | b);
     }
 
     @Override
     protected
     void processSetBackgroundColor(final int color) throws IOException {
-        writeAttribute("span style=\"background-color: " + ANSI_COLOR_MAP[color] + ";\"");
+        setBackground(color);
+    }
+
+    @Override
+    protected
+    void processSetBackgroundColor(final int color, final boolean bright) throws IOException {
+        setBackground(bright ? color + 8 : color);
+    }
+
+    @Override
+    protected
+    void processSetBackgroundColorExt(final int paletteIndex) throws IOException {
+        setBackground(paletteIndex);
+    }
+
+    @Override
+    protected
+    void processSetBackgroundColorExt(final int r, final int g, final int b) throws IOException {
+        setBackground(RGB_FLAG | r << 16 | g << 8 | b);
+    }
+
+    @Override
+    protected
+    void processDefaultTextColor() throws IOException {
+        if (useClasses) {
+            foreground = DEFAULT_COLOR;
+        }
+    }
+
+    @Override
+    protected
+    void processDefaultBackgroundColor() throws IOException {
+        if (useClasses) {
+            background = DEFAULT_COLOR;
+        }
     }
 
     @Override
     protected
     void processAttributeReset() throws IOException {
+        if (useClasses) {
+            resetStyle();
+            return;
+        }
+
         if (concealOn) {
-            write("\u001B[0m");
+            out.write(RESET);
             concealOn = false;
         }
         closeAttributes();
     }
 
+    private
+    void resetStyle() {
+        foreground = DEFAULT_COLOR;
+        background = DEFAULT_COLOR;
+        attributes = 0;
+    }
+
     @Override
     public
     void close() throws IOException {
-        closeAttributes();
+        if (pendingCount > 0) {
+            write(pendingBytes, 0, pendingCount);
+            pendingCount = 0;
+        }
+
+        if (useClasses) {
+            closeSpan();
+        }
+        else {
+            closeAttributes();
+        }
         super.close();
     }
 
     public
     void writeLine(final byte[] buf, final int offset, final int len) throws IOException {
         write(buf, offset, len);
-        closeAttributes();
+
+        if (useClasses) {
+            closeSpan();
+            resetStyle();
+        }
+        else {
+            closeAttributes();
+        }
+    }
+
+    /**
+     * Converts the next chunk of a stream, so that it can be sent (and displayed) on its own. The output of every chunk is a complete
+     * html fragment: the open tags are closed at the end of the chunk, and the style is kept so that the next chunk opens them again.
+     * Escape sequences and UTF-8 characters that are split across chunks are converted once the rest of them has arrived.
+     */
+    public
+    void writeChunk(final byte[] buf, final int offset, final int len) throws IOException {
+        if ((offset | len | (buf.length - (len + offset)) | (offset + len)) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        final int previousCount = pendingCount;
+        final int total = previousCount + len;
+        final int incomplete = incompleteLength(buf, offset, len);
+
+        // the bytes of the previous chunk go first, and then everything except the incomplete character at the end
+        final int complete = total - incomplete;
+        if (complete > 0) {
+            int fromPending = Math.min(previousCount, complete);
+            if (fromPending > 0) {
+                write(pendingBytes, 0, fromPending);
+            }
+            if (complete > fromPending) {
+                write(buf, offset, complete - fromPending);
+            }
+        }
+
+        // keep the incomplete character for the next chunk
+        for (int i = 0; i < incomplete; i++) {
+            int index = complete + i;
+            pendingBytes[i] = index < previousCount ? pendingBytes[index] : buf[offset + index - previousCount];
+        }
+        pendingCount = incomplete;
+
+        if (useClasses) {
+            closeSpan();
+        }
+        else if (tagCount > 0 && !reopenTags) {
+            for (int i = tagCount - 1; i >= 0; i--) {
+                out.write(closingTags[i]);
+            }
+            reopenTags = true;
+        }
+
+        out.flush();
+    }
+
+    /**
+     * @return the number of bytes (of the pending bytes followed by the chunk) at the end that are an incomplete UTF-8 character
+     */
+    private
+    int incompleteLength(final byte[] buf, final int offset, final int len) {
+        final int total = pendingCount + len;
+        final int stop = Math.max(0, total - 4);
+
+        for (int i = total - 1; i >= stop; i--) {
+            final int b = i < pendingCount ? pendingBytes[i] : buf[offset + i - pendingCount];
+
+            if ((b & 0xC0) == 0x80) {
+                // a continuation byte
+                continue;
+            }
+            if ((b & 0x80) == 0) {
+                return 0;
+            }
+
+            final int needed;
+            if ((b & 0xE0) == 0xC0) {
+                needed = 2;
+            }
+            else if ((b & 0xF0) == 0xE0) {
+                needed = 3;
+            }
+            else if ((b & 0xF8) == 0xF0) {
+                needed = 4;
+            }
+            else {
+                return 0;
+            }
+
+            final int available = total - i;
+            return available < needed ? available : 0;
+        }
+
+        return 0;
     }
 }
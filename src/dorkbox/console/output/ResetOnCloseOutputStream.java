@@ -0,0 +1,47 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.output;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Passes everything through to the underlying (ANSI capable) stream unchanged, and resets the ANSI attributes when it is closed.
+ * <p>
+ * Array writes are forwarded as a single write, instead of one write per byte (which is what {@link FilterOutputStream} does).
+ */
+final
+class ResetOnCloseOutputStream extends FilterOutputStream {
+
+    ResetOnCloseOutputStream(final OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public
+    void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        out.write(bytes, offset, length);
+    }
+
+    @Override
+    public
+    void close() throws IOException {
+        write(AnsiOutputStream.RESET_CODE);
+        flush();
+        super.close();
+    }
+}
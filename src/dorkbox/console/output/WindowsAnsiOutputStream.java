@@ -252,20 +252,6 @@ public final class WindowsAnsiOutputStream extends AnsiOutputStream {
     @Override
     protected
     void processSetAttribute(final int attribute) throws IOException {
-        if (90 <= attribute && attribute <= 97) {
-            // foreground bright
-            info.attributes = (short) (info.attributes & ~0x000F | ANSI_FOREGROUND_COLOR_MAP[attribute - 90]);
-            info.attributes = (short) (info.attributes | FOREGROUND_INTENSITY);
-            applyAttributes();
-            return;
-        } else if (100 <= attribute && attribute <= 107) {
-            // background bright
-            info.attributes = (short) (info.attributes & ~0x00F0 | ANSI_BACKGROUND_COLOR_MAP[attribute - 100]);
-            info.attributes = (short) (info.attributes | BACKGROUND_INTENSITY);
-            applyAttributes();
-            return;
-        }
-
         switch (attribute) {
             case ATTRIBUTE_BOLD:
                 info.attributes = (short) (info.attributes | FOREGROUND_INTENSITY);
@@ -311,6 +297,30 @@ public final class WindowsAnsiOutputStream extends AnsiOutputStream {
         applyAttributes();
     }
 
+    @Override
+    protected
+    void processSetForegroundColor(final int color, final boolean bright) throws IOException {
+        if (bright) {
+            info.attributes = (short) (info.attributes & ~0x000F | ANSI_FOREGROUND_COLOR_MAP[color] | FOREGROUND_INTENSITY);
+            applyAttributes();
+        }
+        else {
+            processSetForegroundColor(color);
+        }
+    }
+
+    @Override
+    protected
+    void processSetBackgroundColor(final int color, final boolean bright) throws IOException {
+        if (bright) {
+            info.attributes = (short) (info.attributes & ~0x00F0 | ANSI_BACKGROUND_COLOR_MAP[color] | BACKGROUND_INTENSITY);
+            applyAttributes();
+        }
+        else {
+            processSetBackgroundColor(color);
+        }
+    }
+
     @Override
     protected
     void processDefaultTextColor() throws IOException {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 dorkbox, llc
+ * Copyright 2010 dorkbox, llc
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,14 +16,137 @@
 package dorkbox.console.util;
 
 /**
- * Used for single char input
+ * Used for single char input. This is a bounded ring buffer (of unicode code points), so that characters which arrive while nobody is
+ * waiting for them are queued instead of lost.
+ * <p>
+ * This is not thread safe, access must be synchronized externally.
  */
 public
 class CharHolder {
-    // default is nothing (0)
-    public char character = (char) 0;
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private final int[] buffer;
+    private int head = 0;
+    private int size = 0;
+
+    // the second half of a surrogate pair, when a code point was only partially returned by takeChar()
+    private int pendingLowSurrogate = -1;
 
     public
     CharHolder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public
+    CharHolder(final int capacity) {
+        buffer = new int[capacity];
+    }
+
+    /**
+     * Adds a character (code point) to the end of the queue
+     *
+     * @return false if the queue is full, and the character was discarded
+     */
+    public
+    boolean add(final int character) {
+        if (size == buffer.length) {
+            return false;
+        }
+
+        int index = head + size;
+        if (index >= buffer.length) {
+            index -= buffer.length;
+        }
+
+        buffer[index] = character;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the first character (code point) in the queue
+     *
+     * @return -1 if the queue is empty
+     */
+    public
+    int take() {
+        if (pendingLowSurrogate != -1) {
+            int character = pendingLowSurrogate;
+            pendingLowSurrogate = -1;
+            return character;
+        }
+
+        return takeQueued();
+    }
+
+    private
+    int takeQueued() {
+        if (size == 0) {
+            return -1;
+        }
+
+        int character = buffer[head];
+        buffer[head] = 0; // safer for passwords, etc
+
+        head++;
+        if (head == buffer.length) {
+            head = 0;
+        }
+        size--;
+
+        return character;
+    }
+
+    /**
+     * Removes the first character in the queue as a UTF-16 char. Characters outside of the BMP are returned as a surrogate pair,
+     * over two calls.
+     *
+     * @return -1 if the queue is empty
+     */
+    public
+    int takeChar() {
+        int character = take();
+
+        if (character >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            pendingLowSurrogate = Character.lowSurrogate(character);
+            return Character.highSurrogate(character);
+        }
+
+        return character;
+    }
+
+    /**
+     * Moves every queued character (code point) to the end of the specified queue (until it is full)
+     * <p>
+     * The second half of a surrogate pair that was only partially returned by takeChar() is not moved, because it is not a code point
+     * (and the first half was returned from this queue).
+     */
+    public
+    void drainTo(final CharHolder holder) {
+        while (size > 0 && holder.size < holder.buffer.length) {
+            holder.add(takeQueued());
+        }
+    }
+
+    public
+    boolean isEmpty() {
+        return size == 0 && pendingLowSurrogate == -1;
+    }
+
+    public
+    int size() {
+        return pendingLowSurrogate == -1 ? size : size + 1;
+    }
+
+    /**
+     * Removes (and overwrites) every queued character. Just like drainTo(), the second half of a surrogate pair that was only partially
+     * returned by takeChar() is kept, so that the next takeChar() completes the pair.
+     */
+    public
+    void clear() {
+        while (size > 0) {
+            takeQueued();
+        }
+        head = 0;
     }
 }
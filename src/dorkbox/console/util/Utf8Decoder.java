@@ -0,0 +1,123 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.util;
+
+/**
+ * Streaming UTF-8 decoder, which converts bytes into unicode code points as they arrive. A multi-byte sequence that is split across
+ * calls is completed by the next call, and malformed input is replaced by {@link #REPLACEMENT_CHARACTER}.
+ * <p>
+ * This does not allocate, and is not thread safe (access must be synchronized externally).
+ */
+public final
+class Utf8Decoder {
+    public static final int REPLACEMENT_CHARACTER = 0xFFFD;
+
+    // the bits of the current multi-byte sequence decoded so far
+    private int codePoint = 0;
+
+    // how many continuation bytes are still needed to finish the current sequence
+    private int remaining = 0;
+
+    // the smallest code point that the current sequence is allowed to encode (anything smaller is an "overlong" encoding)
+    private int minimum = 0;
+
+    public
+    Utf8Decoder() {
+    }
+
+    /**
+     * Decodes the bytes into code points. An incomplete sequence at the end of the bytes is kept, and finished by the next call.
+     *
+     * @param bytes the UTF-8 input
+     * @param offset where to start in the input
+     * @param length how many bytes to decode
+     * @param codePoints where the decoded code points are written to (starting at 0). This must have space for (length + 1) code points.
+     *
+     * @return the number of code points written, which can be 0 if the bytes are only part of a sequence
+     */
+    public
+    int decode(final byte[] bytes, final int offset, final int length, final int[] codePoints) {
+        int count = 0;
+        final int end = offset + length;
+
+        for (int i = offset; i < end; i++) {
+            final int b = bytes[i] & 0xFF;
+
+            if (remaining > 0) {
+                if ((b & 0xC0) == 0x80) {
+                    codePoint = (codePoint << 6) | (b & 0x3F);
+
+                    if (--remaining == 0) {
+                        if (codePoint < minimum || codePoint > Character.MAX_CODE_POINT ||
+                            (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+                            codePoint = REPLACEMENT_CHARACTER;
+                        }
+                        codePoints[count++] = codePoint;
+                    }
+                    continue;
+                }
+
+                // the sequence was cut short. This byte starts something new.
+                remaining = 0;
+                codePoints[count++] = REPLACEMENT_CHARACTER;
+            }
+
+            if (b < 0x80) {
+                codePoints[count++] = b;
+            }
+            else if ((b & 0xE0) == 0xC0) {
+                start(b & 0x1F, 1, 0x80);
+            }
+            else if ((b & 0xF0) == 0xE0) {
+                start(b & 0x0F, 2, 0x800);
+            }
+            else if ((b & 0xF8) == 0xF0) {
+                start(b & 0x07, 3, 0x10000);
+            }
+            else {
+                // a continuation byte without a start byte, or a byte that is never valid in UTF-8
+                codePoints[count++] = REPLACEMENT_CHARACTER;
+            }
+        }
+
+        return count;
+    }
+
+    private
+    void start(final int bits, final int continuationBytes, final int minimum) {
+        this.codePoint = bits;
+        this.remaining = continuationBytes;
+        this.minimum = minimum;
+    }
+
+    /**
+     * @return true if part of a multi-byte sequence has been decoded, and the rest of it has not arrived yet
+     */
+    public
+    boolean isPending() {
+        return remaining > 0;
+    }
+
+    /**
+     * Discards any partially decoded sequence
+     */
+    public
+    void reset() {
+        codePoint = 0;
+        remaining = 0;
+        minimum = 0;
+    }
+}
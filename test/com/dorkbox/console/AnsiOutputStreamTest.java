@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dorkbox.console;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import dorkbox.console.output.AnsiOutputStream;
+
+/**
+ * Tests for the {@link AnsiOutputStream} class.
+ */
+public class AnsiOutputStreamTest {
+    private static final Charset charset = Charset.forName("UTF-8");
+
+    @Test
+    public void testNoMarkup() throws IOException {
+        assertEquals("line", strip("line"));
+        assertEquals("", strip(""));
+    }
+
+    @Test
+    public void testStrip() throws IOException {
+        assertEquals("hello world", strip("\u001B[1mhello \u001B[0;31;49mworld\u001B[m"));
+        assertEquals("\u3053\u3093\u306b\u3061\u306f", strip("\u001B[1m\u3053\u3093\u306b\u3061\u306f\u001B[0m"));
+    }
+
+    @Test
+    public void testUnknownSequence() throws IOException {
+        // not a CSI or OSC sequence, so it is written as-is
+        assertEquals("\u001B(Bfoo", strip("\u001B(Bfoo"));
+    }
+
+    @Test
+    public void testSplitWrites() throws IOException {
+        String text = "one \u001B[1;32mtwo\u001B[0m three \u001B[4mfour\u001B[m";
+        byte[] bytes = text.getBytes(charset);
+
+        // every possible split point has to produce the same output
+        for (int split = 0; split <= bytes.length; split++) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            AnsiOutputStream aos = new AnsiOutputStream(os);
+
+            aos.write(bytes, 0, split);
+            aos.write(bytes, split, bytes.length - split);
+            aos.close();
+
+            assertEquals("one two three four", new String(os.toByteArray(), charset));
+        }
+    }
+
+    @Test
+    public void testSingleByteWrites() throws IOException {
+        byte[] bytes = "a\u001B[31mb\u001B[0mc".getBytes(charset);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        AnsiOutputStream aos = new AnsiOutputStream(os);
+        for (byte b : bytes) {
+            aos.write(b);
+        }
+        aos.close();
+
+        assertEquals("abc", new String(os.toByteArray(), charset));
+    }
+
+    @Test
+    public void testOptions() throws IOException {
+        final StringBuilder calls = new StringBuilder();
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        AnsiOutputStream aos = new AnsiOutputStream(os) {
+            @Override
+            protected void processCursorTo(int row, int col) {
+                calls.append("to:").append(row).append(',').append(col).append(' ');
+            }
+
+            @Override
+            protected void processSetForegroundColor(int color) {
+                calls.append("fg:").append(color).append(' ');
+            }
+
+            @Override
+            protected void processSetAttribute(int attribute) {
+                calls.append("attr:").append(attribute).append(' ');
+            }
+
+            @Override
+            protected void processUnknownExtension(ArrayList<Object> options, int command) {
+                calls.append("ext:").append(options).append((char) command).append(' ');
+            }
+
+            @Override
+            protected void processUnknownOperatingSystemCommand(int command, String param) {
+                calls.append("osc:").append(command).append(',').append(param).append(' ');
+            }
+        };
+
+        aos.write("\u001B[12;345H\u001B[;7H\u001B[1;31m\u001B[?25l\u001B]2;title\u0007done".getBytes(charset));
+        aos.close();
+
+        assertEquals("to:12,345 to:1,7 attr:1 fg:1 ext:" + Arrays.asList('?', 25) + "l osc:2,title ", calls.toString());
+        assertEquals("done", new String(os.toByteArray(), charset));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testBounds() throws IOException {
+        new AnsiOutputStream(new ByteArrayOutputStream()).write(new byte[4], 2, 3);
+    }
+
+    private static String strip(String text) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        AnsiOutputStream aos = new AnsiOutputStream(os);
+
+        aos.write(text.getBytes(charset));
+        aos.close();
+        return new String(os.toByteArray(), charset);
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.dorkbox.console;
 
+import static dorkbox.console.output.AnsiRenderer.render;
 import static org.junit.Assert.assertEquals;
 
 import java.io.ByteArrayOutputStream;
@@ -57,4 +58,30 @@ public class AnsiRenderWriterTest
         String result = new String(baos.toByteArray());
         assertEquals("foo", result);
     }
+
+    @Test
+    public void testRenderSplitMarkup() {
+        out.print("a @");
+        out.print("|bo");
+        out.write(new char[] {'l', 'd', ',', 'r', 'e', 'd', ' ', 'f'});
+        out.print("oo|");
+        out.print("@ b");
+        out.write('@');
+        out.print("@|bold|@ c @ d");
+        out.flush();
+
+        String result = new String(baos.toByteArray());
+        assertEquals(render("a @|bold,red foo|@ b@") + "@|bold|@ c @ d", result);
+    }
+
+    @Test
+    public void testRenderFormat() {
+        out.format("@|bold %s|@ %d", "foo", 12);
+        out.println();
+        out.print("@|red bar");
+        out.close();
+
+        String result = new String(baos.toByteArray());
+        assertEquals(render("@|bold foo|@ 12") + System.lineSeparator() + render("@|red bar|@"), result);
+    }
 }
@@ -20,6 +20,7 @@ import static dorkbox.console.output.AnsiRenderer.render;
 import static dorkbox.console.output.Attribute.BOLD;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Before;
@@ -28,6 +29,7 @@ import org.junit.Test;
 import dorkbox.console.Console;
 import dorkbox.console.output.Ansi;
 import dorkbox.console.output.AnsiRenderer;
+import dorkbox.console.output.AnsiTemplate;
 import dorkbox.console.output.Color;
 
 /**
@@ -96,6 +98,28 @@ public class AnsiRendererTest
     }
     
 
+    @Test
+    public void testCompile() {
+        AnsiTemplate template = AnsiRenderer.compile("@|bold,red foo|@ ick @|BG_BLUE bar|@");
+        assertEquals(render("@|bold,red foo|@ ick @|BG_BLUE bar|@"), template.render());
+        assertEquals(Ansi.ansi()
+                             .a(BOLD).fg(Color.RED).a("foo").reset()
+                             .a(" ick ")
+                             .bg(Color.BLUE).a("bar").reset()
+                             .toString(), template.render());
+
+        // compiled templates are cached
+        assertSame(template, AnsiRenderer.compile("@|bold,red foo|@ ick @|BG_BLUE bar|@"));
+
+        assertEquals("@|bold foo", AnsiRenderer.compile("@|bold foo").render());
+        assertEquals("foo", AnsiRenderer.compile("foo").render());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileInvalidCode() {
+        AnsiRenderer.compile("@|nope foo|@");
+    }
+
     @Test
     public void testRenderNothing() {
         assertEquals("foo", render("foo"));
@@ -45,4 +45,22 @@ public class AnsiStringTest
         assertEquals("foo", as.getPlain());
         assertEquals(3, as.length());
     }
+
+    @Test
+    public void testPlainChars() throws Exception {
+        String bold = Ansi.ansi().a(Attribute.BOLD).toString();
+        String reset = Ansi.ansi().reset().toString();
+
+        AnsiString as = new AnsiString(bold + "f\u00F6o" + reset + " \u001B]0;title\u0007bar");
+        assertEquals("f\u00F6o bar", as.getPlain());
+        assertEquals('\u00F6', as.charAt(1));
+        assertEquals('b', as.charAt(4));
+
+        assertEquals(bold + "f\u00F6", as.subSequence(0, 2).toString());
+        assertEquals("o" + reset + " \u001B]0;title\u0007bar", as.subSequence(2, 7).toString());
+        assertEquals("bar", ((AnsiString) as.subSequence(4, 7)).getPlain());
+
+        // escape sequences that are not complete are not stripped
+        assertEquals("\u001B[1!foo", new AnsiString("\u001B[1!foo" + reset).getPlain());
+    }
 }
@@ -21,6 +21,12 @@ import static dorkbox.console.output.AnsiRenderer.render;
 import static dorkbox.console.output.Attribute.BOLD;
 import static dorkbox.console.output.Color.RED;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 
 import org.junit.Test;
 
@@ -42,6 +48,83 @@ public class AnsiTest
         assertEquals(ansi.a("test").reset().toString(), clone.a("test").reset().toString());
     }
 
+    @Test
+    public void testEscapeSequences() {
+        assertEquals("\u001B[31mfoo\u001B[m", ansi().fg(RED).a("foo").reset().toString());
+        assertEquals("\u001B[31;40;1mfoo\u001B[m", ansi().fg(RED).bg(Color.BLACK).bold().a("foo").reset().toString());
+
+        // combined sequences are cached, and have to be the same the second time
+        assertEquals("\u001B[31;40;1mfoo\u001B[m", ansi().fg(RED).bg(Color.BLACK).bold().a("foo").reset().toString());
+
+        assertEquals("\u001B[39;1m\u001B[95m", ansi().fg(Color.BRIGHT_DEFAULT).a("").fg(Color.BRIGHT_MAGENTA).toString());
+        assertEquals("\u001B[3;4H\u001B[12A", ansi().cursor(3, 4).cursorUp(12).toString());
+
+        // more options than fit in a single escape sequence
+        Ansi ansi = ansi();
+        for (int i = 0; i < 17; i++) {
+            ansi.bold();
+        }
+        assertEquals("\u001B[1;1;1;1;1;1;1;1;1;1;1;1;1;1;1;1m\u001B[1m", ansi.toString());
+    }
+
+    @Test
+    public void testSinks() throws Exception {
+        Charset charset = Charset.forName("UTF-8");
+        String expected = build(ansi()).toString();
+
+        StringWriter writer = new StringWriter();
+        build(ansi(writer)).flush();
+        assertEquals(expected, writer.toString());
+
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        build(ansi(buffer)).flush();
+        assertEquals(expected, new String(buffer.array(), 0, buffer.position(), charset));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        build(ansi(outputStream)).flush();
+        assertEquals(expected, new String(outputStream.toByteArray(), charset));
+    }
+
+    private static Ansi build(Ansi ansi) {
+        // the surrogate pair is split across two appends
+        return ansi.fg(RED).bold().a("caf\u00e9 ").a('\ud83d').a('\ude00').reset().a(" \u3053\u3093").cursorUp(2).a(42).bg(Color.BLUE);
+    }
+
+    @Test
+    public void testClear() {
+        Ansi ansi = ansi().fg(RED).a("foo").bold();
+        assertEquals("", ansi.clear().toString());
+        assertEquals("bar", ansi.a("bar").toString());
+
+        Ansi pooled = Ansi.pooled().fg(RED).a("foo");
+        assertEquals("\u001B[31mfoo", pooled.toString());
+
+        // the same object, but empty again
+        assertSame(pooled, Ansi.pooled());
+        assertEquals("", pooled.toString());
+    }
+
+    @Test
+    public void testTrackStyle() {
+        assertEquals("\u001B[31mxy", ansi().trackStyle(true).fg(RED).a("x").fg(RED).a("y").toString());
+        assertEquals("x\u001B[31my\u001B[m", ansi().trackStyle(true).reset().a("x").reset().fg(RED).a("y").reset().reset().toString());
+
+        // only what changed
+        assertEquals("\u001B[1;31mx\u001B[22;32my", ansi().trackStyle(true).fg(RED).bold().a("x").boldOff().fg(Color.GREEN).a("y").toString());
+
+        // turning off more than it turns on is shorter as a reset
+        assertEquals("\u001B[1;3;4;31mx\u001B[0;32my",
+                     ansi().trackStyle(true).bold().italic().underline().fg(RED).a("x").boldOff().italicOff().underlineOff().fg(Color.GREEN).a("y")
+                           .toString());
+
+        // rendered markup is tracked as well (the reset at the end is followed by the same color)
+        assertEquals("\u001B[31mxy", ansi().trackStyle(true).fg(RED).render("@|red x|@").fg(RED).a("y").toString());
+
+        // but formatted text is not, so the attributes after it are written as-is
+        assertEquals("\u001B[31m" + render("@|red x|@") + "\u001B[31my",
+                     ansi().trackStyle(true).fg(RED).render("@|red %s|@", "x").fg(RED).a("y").toString());
+    }
+
     @Test
     public void testOutput() throws CloneNotSupportedException {
 
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link AsyncOutputStream} class (which is package private, so this is in the same package).
+ */
+public class AsyncOutputStreamTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Collects the output, and (while closed) blocks the writer thread, like a stalled console.
+     */
+    private static class GateOutputStream extends OutputStream {
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private final CountDownLatch gate;
+
+        GateOutputStream(boolean open) {
+            gate = new CountDownLatch(open ? 0 : 1);
+        }
+
+        void open() {
+            gate.countDown();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+
+            synchronized (output) {
+                output.write(bytes, offset, length);
+            }
+        }
+
+        String text() {
+            synchronized (output) {
+                return new String(output.toByteArray(), UTF_8);
+            }
+        }
+    }
+
+    private static byte[] bytes(char c, int count) {
+        byte[] bytes = new byte[count];
+        Arrays.fill(bytes, (byte) c);
+        return bytes;
+    }
+
+    private static String text(char c, int count) {
+        return new String(bytes(c, count), UTF_8);
+    }
+
+    @Test(timeout = 20000)
+    public void testOrderAcrossProducers() throws Exception {
+        final GateOutputStream gate = new GateOutputStream(true);
+        final AsyncOutputStream stream = new AsyncOutputStream(gate, 4096, "BLOCK", "test");
+
+        final int producers = 4;
+        final int lines = 20000;
+        Thread[] threads = new Thread[producers];
+
+        for (int i = 0; i < producers; i++) {
+            final int producer = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int line = 0; line < lines; line++) {
+                            stream.write(("producer " + producer + " line " + line + "\n").getBytes(UTF_8));
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(stream.flush(10, TimeUnit.SECONDS));
+
+        // every write is complete (never split up or interleaved), and the writes of each producer are in order
+        int[] next = new int[producers];
+        String[] written = gate.text().split("\n");
+        assertEquals(producers * lines, written.length);
+
+        for (String line : written) {
+            String[] parts = line.split(" ");
+            assertEquals(4, parts.length);
+
+            int producer = Integer.parseInt(parts[1]);
+            assertEquals(next[producer]++, Integer.parseInt(parts[3]));
+        }
+        assertEquals(0, stream.getDroppedBytes());
+
+        stream.close();
+    }
+
+    @Test(timeout = 20000)
+    public void testBlock() throws Exception {
+        final GateOutputStream gate = new GateOutputStream(false);
+        final AsyncOutputStream stream = new AsyncOutputStream(gate, 1024, "BLOCK", "test");
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    stream.write(bytes('a', 1024));
+                    stream.write(bytes('b', 1024));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        producer.start();
+
+        // the buffer is full, so the producer waits for the (stalled) console
+        producer.join(200);
+        assertTrue(producer.isAlive());
+
+        gate.open();
+        producer.join();
+        assertTrue(stream.flush(10, TimeUnit.SECONDS));
+
+        assertEquals(text('a', 1024) + text('b', 1024), gate.text());
+        assertEquals(0, stream.getDroppedBytes());
+
+        stream.close();
+    }
+
+    @Test(timeout = 20000)
+    public void testDrop() throws Exception {
+        GateOutputStream gate = new GateOutputStream(false);
+        AsyncOutputStream stream = new AsyncOutputStream(gate, 1024, "DROP", "test");
+
+        stream.write(bytes('a', 1024));
+        stream.write(bytes('b', 100));
+        assertEquals(100, stream.getDroppedBytes());
+
+        gate.open();
+        assertTrue(stream.flush(10, TimeUnit.SECONDS));
+        assertEquals(text('a', 1024), gate.text());
+
+        stream.close();
+    }
+
+    @Test(timeout = 20000)
+    public void testCoalesce() throws Exception {
+        GateOutputStream gate = new GateOutputStream(false);
+        AsyncOutputStream stream = new AsyncOutputStream(gate, 1024, "COALESCE", "test");
+
+        stream.write(bytes('a', 1024));
+        stream.write(bytes('b', 100));
+        stream.write(bytes('c', 50));
+
+        gate.open();
+        assertTrue(stream.flush(10, TimeUnit.SECONDS));
+
+        // the discarded output is replaced by a single notice
+        String newLine = System.getProperty("line.separator");
+        assertEquals(text('a', 1024) + newLine + "[console output buffer full: 150 bytes discarded]" + newLine, gate.text());
+
+        stream.write(bytes('d', 10));
+        assertTrue(stream.flush(10, TimeUnit.SECONDS));
+        assertTrue(gate.text().endsWith("discarded]" + newLine + text('d', 10)));
+
+        stream.close();
+    }
+
+    @Test(timeout = 20000)
+    public void testFlush() throws Exception {
+        GateOutputStream gate = new GateOutputStream(false);
+        AsyncOutputStream stream = new AsyncOutputStream(gate, 1024, "BLOCK", "test");
+
+        stream.write(bytes('a', 100));
+        assertFalse(stream.flush(50, TimeUnit.MILLISECONDS));
+        assertEquals("", gate.text());
+
+        gate.open();
+        assertTrue(stream.flush(10, TimeUnit.SECONDS));
+        assertEquals(text('a', 100), gate.text());
+
+        // flush() waits until everything that was written before it is written
+        for (int i = 0; i < 100; i++) {
+            stream.write(bytes('b', 10));
+            stream.flush();
+            assertEquals(text('a', 100) + text('b', 10 * (i + 1)), gate.text());
+        }
+
+        stream.close();
+    }
+
+    @Test(timeout = 20000)
+    public void testWriteAfterClose() throws Exception {
+        GateOutputStream gate = new GateOutputStream(true);
+        AsyncOutputStream stream = new AsyncOutputStream(gate, 1024, "BLOCK", "test");
+
+        stream.write(bytes('a', 10));
+        stream.close();
+        assertEquals(text('a', 10), gate.text());
+
+        try {
+            stream.write(bytes('b', 10));
+            fail("A closed stream must not be written to");
+        } catch (IOException expected) {
+        }
+        assertEquals(text('a', 10), gate.text());
+    }
+}
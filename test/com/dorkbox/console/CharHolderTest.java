@@ -0,0 +1,91 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dorkbox.console;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import dorkbox.console.util.CharHolder;
+
+/**
+ * Tests for the {@link CharHolder} class.
+ */
+public class CharHolderTest {
+    private static final int EMOJI = 0x1F600;
+
+    @Test
+    public void testQueue() {
+        CharHolder holder = new CharHolder(3);
+        assertTrue(holder.isEmpty());
+        assertEquals(-1, holder.take());
+
+        assertTrue(holder.add('a'));
+        assertTrue(holder.add('b'));
+        assertTrue(holder.add('c'));
+        assertFalse(holder.add('d'));
+        assertEquals(3, holder.size());
+
+        assertEquals('a', holder.take());
+        assertTrue(holder.add('d'));
+
+        // wraps around the end of the buffer
+        assertEquals('b', holder.take());
+        assertEquals('c', holder.take());
+        assertEquals('d', holder.take());
+        assertTrue(holder.isEmpty());
+    }
+
+    @Test
+    public void testSurrogatePairs() {
+        CharHolder holder = new CharHolder();
+        holder.add(EMOJI);
+        holder.add('a');
+
+        assertEquals(0xD83D, holder.takeChar());
+        assertEquals(0xDE00, holder.takeChar());
+        assertEquals('a', holder.takeChar());
+
+        holder.add(EMOJI);
+        assertEquals(EMOJI, holder.take());
+    }
+
+    @Test
+    public void testDrainTo() {
+        CharHolder holder = new CharHolder();
+        holder.add(EMOJI);
+        holder.add('a');
+        holder.add('b');
+
+        CharHolder target = new CharHolder(1);
+
+        // the first half of the pair was returned from this queue, so the second half stays here
+        assertEquals(0xD83D, holder.takeChar());
+        holder.drainTo(target);
+
+        // only code points are moved, until the target is full
+        assertEquals(1, target.size());
+        assertEquals('a', target.take());
+
+        assertEquals(2, holder.size());
+        holder.clear();
+        assertEquals(1, holder.size());
+        assertEquals(0xDE00, holder.takeChar());
+        assertTrue(holder.isEmpty());
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dorkbox.console;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+import dorkbox.console.output.Ansi;
+import dorkbox.console.output.AnsiString;
+import dorkbox.console.output.Color;
+import dorkbox.console.util.DisplayWidth;
+
+/**
+ * Tests for the {@link DisplayWidth} class.
+ */
+public class DisplayWidthTest {
+    @Test
+    public void testCodePoints() {
+        assertEquals(1, DisplayWidth.width('a'));
+        assertEquals(1, DisplayWidth.width(0x00e9));
+        assertEquals(0, DisplayWidth.width(0x0301)); // combining acute accent
+        assertEquals(0, DisplayWidth.width(0x200b)); // zero width space
+        assertEquals(0, DisplayWidth.width('\n'));
+        assertEquals(2, DisplayWidth.width(0x4e2d)); // CJK ideograph
+        assertEquals(2, DisplayWidth.width(0xac00)); // Hangul syllable
+        assertEquals(2, DisplayWidth.width(0xff21)); // fullwidth A
+        assertEquals(1, DisplayWidth.width(0xff61)); // halfwidth katakana
+        assertEquals(2, DisplayWidth.width(0x1f600)); // emoji
+        assertEquals(2, DisplayWidth.width(0x20000)); // CJK extension B
+        assertEquals(1, DisplayWidth.width(0x50000)); // unassigned
+        assertEquals(0, DisplayWidth.width(0xe0100)); // variation selector
+    }
+
+    @Test
+    public void testText() {
+        assertEquals(0, DisplayWidth.width(""));
+        assertEquals(3, DisplayWidth.width("foo"));
+        assertEquals(7, DisplayWidth.width("\u00e9\u4e2d\u6587\ud83d\ude00"));
+
+        char[] chars = "a\u4e2db".toCharArray();
+        assertEquals(2, DisplayWidth.width(chars, 1, 1));
+    }
+
+    @Test
+    public void testAnsi() {
+        String text = Ansi.ansi().fg(Color.RED).a("\u4e2d\u6587").reset().a(" x").toString();
+        assertEquals(6, new AnsiString(text).displayWidth());
+        assertEquals(4, new AnsiString(text).length());
+
+        Ansi ansi = Ansi.ansi().fg(Color.RED).a("\u4e2d\u6587").reset().a(' ').a(42).a(-7L).a(text);
+        assertEquals(4 + 1 + 2 + 2 + 6, ansi.displayWidth());
+        assertEquals(0, ansi.clear().displayWidth());
+        assertEquals(3, ansi.a("abc").displayWidth());
+
+        // the text cannot be measured again from a stream, so it is measured as it is written
+        Ansi stream = Ansi.ansi(new ByteArrayOutputStream()).fg(Color.RED).a("\u4e2d\u6587").reset().a(' ').a(42).a(text);
+        assertEquals(4 + 1 + 2 + 6, stream.displayWidth());
+    }
+}
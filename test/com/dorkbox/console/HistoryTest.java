@@ -0,0 +1,243 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the {@link History} class.
+ */
+public class HistoryTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write(String contents) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), contents.getBytes(UTF_8));
+        return file;
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), UTF_8);
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        // windows line endings, and no new line at the end
+        File file = write("one\r\ntwo\nthr\u00e9e");
+        History history = new History(10, file.getPath());
+
+        assertEquals(3, history.size());
+        assertEquals("one", history.get(0));
+        assertEquals("two", history.get(1));
+        assertEquals("thr\u00e9e", history.get(2));
+
+        // the unfinished line is finished before a line is added
+        history.add("four");
+        assertEquals("one\r\ntwo\nthr\u00e9e\nfour\n", read(file));
+
+        History reloaded = new History(10, file.getPath());
+        assertEquals(4, reloaded.size());
+        assertEquals("thr\u00e9e", reloaded.get(2));
+        assertEquals("four", reloaded.get(3));
+    }
+
+    @Test
+    public void testLoadEnd() throws IOException {
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < 15; i++) {
+            contents.append("line ").append(i).append('\n');
+        }
+        File file = write(contents.toString());
+
+        // only the most recent lines are kept, and the file is not compacted until it has twice as many lines
+        History history = new History(10, file.getPath());
+        assertEquals(10, history.size());
+        assertEquals("line 5", history.get(0));
+        assertEquals("line 14", history.get(9));
+        assertEquals(contents.toString(), read(file));
+
+        assertEquals(15, new History(20, file.getPath()).size());
+
+        // more than twice as many lines, only the end of the file is kept
+        History compacted = new History(4, file.getPath());
+        assertEquals(4, compacted.size());
+        assertEquals("line 11", compacted.get(0));
+        assertEquals("line 11\nline 12\nline 13\nline 14\n", read(file));
+    }
+
+    @Test
+    public void testAdd() throws IOException {
+        File file = write("");
+        History history = new History(10, file.getPath());
+        assertEquals(0, history.size());
+
+        history.add("a");
+        history.add("");
+        history.add("a");
+        history.add("b");
+        history.add("a");
+
+        assertEquals(3, history.size());
+        assertEquals("a", history.get(0));
+        assertEquals("b", history.get(1));
+        assertEquals("a", history.get(2));
+        assertEquals("a\nb\na\n", read(file));
+    }
+
+    @Test
+    public void testSearch() throws IOException {
+        History history = new History(10, write("git status\r\nls\ngit push\n").getPath());
+        history.add("git log");
+
+        assertEquals(3, history.search("git", 3));
+        assertEquals(2, history.search("git", 2));
+        assertEquals(0, history.search("git s", 3));
+        assertEquals(1, history.search("ls", 3));
+        assertEquals(-1, history.search("ls", 0));
+        assertEquals(-1, history.search("git status\r", 3));
+        assertEquals(-1, history.search("x", 3));
+    }
+
+    @Test
+    public void testSearchLongPrefix() throws IOException {
+        History history = new History(10, write("git commit -m first\ngit commit --amend\ngit c\n\u00e9t\u00e9 \u00e9t\u00e9\n").getPath());
+        history.add("git commit -m second");
+
+        // longer than the indexed bytes, and the same indexed bytes as other lines
+        assertEquals(4, history.search("git commit -m", 4));
+        assertEquals(0, history.search("git commit -m", 3));
+        assertEquals(1, history.search("git commit --", 4));
+        assertEquals(-1, history.search("git commit -m first!", 4));
+
+        // shorter than the indexed bytes, and lines that are shorter than the prefix
+        assertEquals(2, history.search("git c", 3));
+        assertEquals(-1, history.search("git commit -m", -1));
+        assertEquals(3, history.search("\u00e9t\u00e9 \u00e9", 4));
+        assertEquals(3, history.search("", 3));
+    }
+
+    @Test
+    public void testSearchAdded() throws IOException {
+        History history = new History(3, write("a\nb\n").getPath());
+        assertEquals(-1, history.search("c", 1));
+
+        // the index grows as lines are added, and is built again after the file is compacted
+        for (int i = 0; i < 10; i++) {
+            history.add("c" + i);
+            assertEquals(history.size() - 1, history.search("c" + i, history.size() - 1));
+        }
+        assertEquals(-1, history.search("a", 2));
+        assertEquals(0, history.search("c7", 2));
+
+        History withoutFile = new History(3, "");
+        for (int i = 0; i < 10; i++) {
+            withoutFile.add("c" + i);
+            assertEquals(withoutFile.size() - 1, withoutFile.search("c" + i, withoutFile.size() - 1));
+        }
+        assertEquals(0, withoutFile.search("c7", 2));
+    }
+
+    @Test
+    public void testCompact() throws IOException {
+        File file = write("");
+        History history = new History(3, file.getPath());
+
+        for (int i = 0; i < 10; i++) {
+            history.add("line " + i);
+        }
+
+        assertEquals(3, history.size());
+        assertEquals("line 7", history.get(0));
+        assertEquals("line 9", history.get(2));
+
+        // compacted (for the last time) when it had twice as many lines as the history, after "line 8" was added
+        assertEquals("line 6\nline 7\nline 8\nline 9\n", read(file));
+
+        History reloaded = new History(3, file.getPath());
+        assertEquals(3, reloaded.size());
+        assertEquals("line 7", reloaded.get(0));
+        assertEquals("line 9", reloaded.get(2));
+    }
+
+    @Test
+    public void testCompactRetry() throws IOException {
+        File file = write("");
+        History history = new History(3, file.getPath());
+
+        // the compacted file cannot be written
+        File blocked = new File(file.getPath() + ".tmp");
+        assertTrue(blocked.mkdir());
+        assertTrue(new File(blocked, "file").createNewFile());
+
+        for (int i = 0; i < 8; i++) {
+            history.add("line " + i);
+        }
+
+        // it is not tried again for every line
+        assertEquals("line 0\nline 1\nline 2\nline 3\nline 4\nline 5\nline 6\nline 7\n", read(file));
+        assertEquals(3, history.size());
+        assertEquals("line 5", history.get(0));
+
+        assertTrue(new File(blocked, "file").delete());
+        assertTrue(blocked.delete());
+
+        // tried again once as many lines as the history were added
+        history.add("line 8");
+        assertEquals("line 6\nline 7\nline 8\n", read(file));
+        assertEquals("line 6", history.get(0));
+        assertEquals("line 8", history.get(2));
+    }
+
+    @Test
+    public void testCompactWindowsLineEndings() throws IOException {
+        File file = write("a\r\nb\r\nc\r\nd\r\n");
+
+        // compacted when it is loaded
+        History history = new History(2, file.getPath());
+        assertEquals(2, history.size());
+        assertEquals("c", history.get(0));
+        assertEquals("d", history.get(1));
+        assertFalse(read(file).contains("\r"));
+        assertEquals("c\nd\n", read(file));
+    }
+
+    @Test
+    public void testWithoutFile() {
+        History history = new History(3, "");
+
+        for (int i = 0; i < 10; i++) {
+            history.add("line " + i);
+        }
+
+        assertEquals(3, history.size());
+        assertEquals("line 7", history.get(0));
+        assertEquals("line 9", history.get(2));
+    }
+}
@@ -17,6 +17,7 @@
 package com.dorkbox.console;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -69,6 +70,18 @@ public class HtmlAnsiOutputStreamTest {
 		assertEquals("&quot;&amp;&lt;&gt;", colorize("\"&<>"));
 	}
 
+	@Test
+	public void testEscapeHtmlInText() throws IOException {
+		assertEquals("a &lt;b&gt; &amp; <b>&quot;c&quot;</b> \u00e9&lt;",
+				colorize("a <b> & \u001B[1m\"c\"\u001B[0m \u00e9<"));
+	}
+
+	@Test
+	public void testNestedAttributes() throws IOException {
+		assertEquals("<b><u><span style=\"color: red;\">x</span></u></b>y",
+				colorize("\u001B[1;4;31mx\u001B[0my"));
+	}
+
 	@Test
 	public void testResetOnOpen() throws IOException {
 		assertEquals("<span style=\"color: red;\">red</span>", 
@@ -81,6 +94,60 @@ public class HtmlAnsiOutputStreamTest {
 				colorize("[1m\u3053\u3093\u306b\u3061\u306f"));
 	}
 
+	@Test
+	public void testExtendedColors() throws IOException {
+		assertEquals("<span style=\"color: #ff5555;\">a</span><span style=\"background-color: #ff8700;\">b</span>" +
+					 "<span style=\"color: #102030;\">c</span>",
+				colorize("\u001B[91ma\u001B[0m\u001B[48;5;208mb\u001B[0m\u001B[38;2;16;32;48mc"));
+	}
+
+	@Test
+	public void testClasses() throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		HtmlAnsiOutputStream hos = new HtmlAnsiOutputStream(os, true);
+
+		// adjacent runs with the same style are merged into one span
+		hos.write(("\u001B[1m\u001B[31ma\u001B[0m\u001B[31;1m<b>\u001B[39;22m plain \u001B[7mx\u001B[0m" +
+				   "\u001B[96;48;2;1;2;255my\u001B[0m").getBytes(charset));
+		hos.close();
+
+		assertEquals("<span class=\"fg-red b\">a&lt;b&gt;</span> plain <span class=\"fg-inverse bg-inverse\">x</span>" +
+					 "<span class=\"fg-bright-cyan\" style=\"background-color: #0102ff;\">y</span>",
+					 new String(os.toByteArray(), charset));
+
+		assertTrue(HtmlAnsiOutputStream.stylesheet().contains(".fg-bright-cyan { color: #55ffff; }"));
+	}
+
+	@Test
+	public void testChunks() throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		HtmlAnsiOutputStream hos = new HtmlAnsiOutputStream(os);
+
+		byte[] bytes = "\u001B[1mab\u3053\u001B[0mc".getBytes(charset);
+
+		// splits the escape sequence, and then the 3 byte character
+		hos.writeChunk(bytes, 0, 2);
+		assertEquals("", chunk(os));
+
+		hos.writeChunk(bytes, 2, 5);
+		assertEquals("<b>ab</b>", chunk(os));
+
+		hos.writeChunk(bytes, 7, 2);
+		assertEquals("<b>\u3053</b>", chunk(os));
+
+		hos.writeChunk(bytes, 9, bytes.length - 9);
+		assertEquals("c", chunk(os));
+
+		hos.close();
+		assertEquals("", chunk(os));
+	}
+
+	private static String chunk(ByteArrayOutputStream os) {
+		String chunk = new String(os.toByteArray(), charset);
+		os.reset();
+		return chunk;
+	}
+
 	private String colorize(String text) throws IOException {
 		ByteArrayOutputStream os = new ByteArrayOutputStream();
 		HtmlAnsiOutputStream hos = new HtmlAnsiOutputStream(os);
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.input;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link LineBuffer} class (which is package private, so this is in the same package).
+ */
+public class LineBufferTest {
+    private static final int EMOJI = 0x1F600; // a surrogate pair, 2 columns wide
+    private static final int CJK = 0x4E2D;    // 2 columns wide
+
+    private static LineBuffer buffer(final String text) {
+        LineBuffer buffer = new LineBuffer();
+        buffer.replace(text);
+        return buffer;
+    }
+
+    @Test
+    public void testInsertAndDeleteAtCursor() {
+        LineBuffer buffer = buffer("abc");
+        assertEquals(3, buffer.cursor());
+        assertEquals(3, buffer.cursorColumn());
+
+        assertTrue(buffer.moveLeft());
+        assertTrue(buffer.moveLeft());
+        buffer.insert('X');
+        assertEquals("aXbc", buffer.toString());
+        assertEquals(2, buffer.cursor());
+        assertEquals(2, buffer.cursorColumn());
+        assertEquals(4, buffer.endColumn());
+
+        assertTrue(buffer.deleteAfter());
+        assertEquals("aXc", buffer.toString());
+        assertTrue(buffer.deleteBefore());
+        assertEquals("ac", buffer.toString());
+        assertEquals(1, buffer.cursor());
+        assertEquals(2, buffer.length());
+        assertEquals('a', buffer.charAt(0));
+        assertEquals('c', buffer.charAt(1));
+
+        buffer.deleteToEnd();
+        assertEquals("a", buffer.toString());
+        assertFalse(buffer.deleteAfter());
+
+        buffer.deleteToStart();
+        assertEquals("", buffer.toString());
+        assertFalse(buffer.deleteBefore());
+        assertEquals(0, buffer.endColumn());
+    }
+
+    @Test
+    public void testStartAndEnd() {
+        LineBuffer buffer = buffer("hello");
+
+        buffer.moveToStart();
+        assertEquals(0, buffer.cursor());
+        assertEquals(0, buffer.cursorColumn());
+        assertFalse(buffer.moveLeft());
+
+        buffer.insert('>');
+        assertEquals(">hello", buffer.toString());
+
+        buffer.moveToEnd();
+        assertEquals(6, buffer.cursor());
+        assertEquals(6, buffer.cursorColumn());
+        assertFalse(buffer.moveRight());
+
+        buffer.insert('<');
+        assertEquals(">hello<", buffer.toString());
+    }
+
+    @Test
+    public void testWords() {
+        LineBuffer buffer = buffer("foo  bar baz");
+
+        buffer.moveWordLeft();
+        assertEquals(9, buffer.cursor());
+        buffer.moveWordLeft();
+        assertEquals(5, buffer.cursor());
+        buffer.moveWordLeft();
+        assertEquals(0, buffer.cursor());
+        buffer.moveWordLeft();
+        assertEquals(0, buffer.cursor());
+
+        buffer.moveWordRight();
+        assertEquals(3, buffer.cursor());
+        buffer.moveWordRight();
+        assertEquals(8, buffer.cursor());
+
+        // deletes "bar" and the spaces before the cursor are kept
+        buffer.deleteWordBefore();
+        assertEquals("foo   baz", buffer.toString());
+        assertEquals(5, buffer.cursor());
+
+        // deletes the spaces and then the word before them
+        buffer.deleteWordBefore();
+        assertEquals(" baz", buffer.toString());
+        assertEquals(0, buffer.cursor());
+    }
+
+    @Test
+    public void testSurrogatePairs() {
+        LineBuffer buffer = new LineBuffer();
+        buffer.insert('a');
+        buffer.insert(EMOJI);
+        buffer.insert('b');
+
+        assertEquals("a\uD83D\uDE00b", buffer.toString());
+        assertEquals(4, buffer.length());
+        assertEquals(4, buffer.endColumn());
+
+        // both halves of the pair are moved over (and deleted) together
+        assertTrue(buffer.moveLeft());
+        assertTrue(buffer.moveLeft());
+        assertEquals(1, buffer.cursor());
+        assertEquals(1, buffer.cursorColumn());
+
+        assertTrue(buffer.moveRight());
+        assertEquals(3, buffer.cursor());
+        assertEquals(3, buffer.cursorColumn());
+
+        assertTrue(buffer.deleteBefore());
+        assertEquals("ab", buffer.toString());
+        assertEquals(1, buffer.cursor());
+        assertEquals(1, buffer.cursorColumn());
+        assertEquals(2, buffer.endColumn());
+
+        buffer.moveToStart();
+        buffer.insert(EMOJI);
+        buffer.moveToStart();
+        assertTrue(buffer.deleteAfter());
+        assertEquals("ab", buffer.toString());
+        assertEquals(2, buffer.endColumn());
+    }
+
+    @Test
+    public void testWideCharacters() {
+        LineBuffer buffer = new LineBuffer();
+        buffer.insert('a');
+        buffer.insert(CJK);
+        buffer.insert('b');
+
+        assertEquals(3, buffer.length());
+        assertEquals(4, buffer.cursorColumn());
+        assertEquals(4, buffer.endColumn());
+
+        buffer.moveLeft();
+        buffer.moveLeft();
+        assertEquals(1, buffer.cursorColumn());
+
+        buffer.deleteAfter();
+        assertEquals("ab", buffer.toString());
+        assertEquals(1, buffer.cursorColumn());
+        assertEquals(2, buffer.endColumn());
+    }
+
+    @Test
+    public void testGrowAndTake() {
+        StringBuilder expected = new StringBuilder();
+        LineBuffer buffer = new LineBuffer();
+
+        // larger than the initial size, and the gap is in the middle while growing
+        for (int i = 0; i < 200; i++) {
+            buffer.insert('a' + i % 26);
+            expected.append((char) ('a' + i % 26));
+        }
+        for (int i = 0; i < 50; i++) {
+            buffer.moveLeft();
+        }
+        for (int i = 0; i < 100; i++) {
+            buffer.insert('0' + i % 10);
+            expected.insert(150 + i, (char) ('0' + i % 10));
+        }
+
+        assertEquals(expected.toString(), buffer.toString());
+        assertEquals(250, buffer.cursor());
+        assertEquals(300, buffer.endColumn());
+
+        assertArrayEquals(expected.toString().toCharArray(), buffer.takeChars());
+        assertEquals(0, buffer.length());
+        assertEquals(0, buffer.endColumn());
+        assertArrayEquals(Terminal.EMPTY_LINE, buffer.takeChars());
+    }
+}
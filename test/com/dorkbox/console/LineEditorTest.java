@@ -0,0 +1,257 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.input;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dorkbox.console.Console;
+
+/**
+ * Tests for the {@link LineEditor} class (which is package private, so this is in the same package), and the exact output of every
+ * edit.
+ */
+public class LineEditorTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String ESC = "\u001B";
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final LineBuffer buffer = new LineBuffer();
+    private final List<LineBuffer> buffers = Collections.singletonList(buffer);
+
+    private boolean echo;
+    private LineEditor editor;
+
+    @Before
+    public void setUp() {
+        echo = Console.ENABLE_ECHO;
+        Console.ENABLE_ECHO = true;
+
+        // there is no completer, so the terminal is never used
+        editor = new LineEditor(null, new PrintStream(output, true), null);
+    }
+
+    @After
+    public void tearDown() {
+        Console.ENABLE_ECHO = echo;
+    }
+
+    /**
+     * Types the keys, and returns what was written to the screen because of them
+     */
+    private String type(final String keys) {
+        output.reset();
+        for (int i = 0; i < keys.length(); ) {
+            int codePoint = keys.codePointAt(i);
+            i += Character.charCount(codePoint);
+            editor.process(codePoint, buffers);
+        }
+        return new String(output.toByteArray(), UTF_8);
+    }
+
+    @Test
+    public void testInsertAtEnd() {
+        assertEquals("abc", type("abc"));
+        assertEquals("abc", buffer.toString());
+    }
+
+    @Test
+    public void testInsertInMiddle() {
+        type("abc");
+
+        // Ctrl-B twice, one write each
+        assertEquals(ESC + "[1D" + ESC + "[1D", type("\u0002\u0002"));
+
+        // only the tail is written again, and then the cursor moves back
+        assertEquals("Xbc" + ESC + "[2D", type("X"));
+        assertEquals("aXbc", buffer.toString());
+    }
+
+    @Test
+    public void testDeleteInMiddle() {
+        type("abcd");
+        type("\u0002\u0002");
+
+        // backspace: back one column, the tail, erase the old end of the line, back to the cursor
+        assertEquals(ESC + "[1D" + "cd" + ESC + "[K" + ESC + "[2D", type("\u007F"));
+        assertEquals("acd", buffer.toString());
+
+        // delete (ESC [ 3 ~): the tail, erase, back to the cursor
+        assertEquals("d" + ESC + "[K" + ESC + "[1D", type(ESC + "[3~"));
+        assertEquals("ad", buffer.toString());
+
+        // Ctrl-D is the same
+        assertEquals(ESC + "[K", type("\u0004"));
+        assertEquals("a", buffer.toString());
+
+        // nothing is written when nothing changes
+        assertEquals("", type("\u0004"));
+    }
+
+    @Test
+    public void testDeleteToStartAndEnd() {
+        type("hello world");
+        type(ESC + "b");
+
+        // Ctrl-K
+        assertEquals(ESC + "[K", type("\u000B"));
+        assertEquals("hello ", buffer.toString());
+
+        // Ctrl-U
+        assertEquals(ESC + "[6D" + ESC + "[K", type("\u0015"));
+        assertEquals("", buffer.toString());
+    }
+
+    @Test
+    public void testDeleteWord() {
+        type("foo bar");
+
+        // Ctrl-W
+        assertEquals(ESC + "[3D" + ESC + "[K", type("\u0017"));
+        assertEquals("foo ", buffer.toString());
+    }
+
+    @Test
+    public void testHomeAndEnd() {
+        type("hello");
+
+        assertEquals(ESC + "[5D", type(ESC + "[H"));
+        assertEquals(0, buffer.cursor());
+        assertEquals("", type(ESC + "OH"));
+
+        assertEquals(ESC + "[5C", type(ESC + "[F"));
+        assertEquals(5, buffer.cursor());
+
+        assertEquals(ESC + "[5D", type(ESC + "[1~"));
+        assertEquals(ESC + "[5C", type(ESC + "[4~"));
+        assertEquals(ESC + "[5D", type("\u0001"));
+        assertEquals(ESC + "[5C", type("\u0005"));
+    }
+
+    @Test
+    public void testWordMoves() {
+        type("foo bar baz");
+
+        // Alt-B, Ctrl-Left
+        assertEquals(ESC + "[3D", type(ESC + "b"));
+        assertEquals(ESC + "[4D", type(ESC + "[1;5D"));
+        assertEquals(4, buffer.cursor());
+
+        // Alt-F, Ctrl-Right
+        assertEquals(ESC + "[3C", type(ESC + "f"));
+        assertEquals(ESC + "[4C", type(ESC + "[1;5C"));
+        assertEquals(11, buffer.cursor());
+
+        // arrows
+        assertEquals(ESC + "[1D", type(ESC + "[D"));
+        assertEquals(ESC + "[1C", type(ESC + "[C"));
+
+        // nothing is written when the cursor does not move
+        assertEquals("", type(ESC + "[C"));
+    }
+
+    @Test
+    public void testSurrogatePairs() {
+        final String emoji = "\uD83D\uDE00";
+
+        assertEquals("a" + emoji + "b", type("a" + emoji + "b"));
+        assertEquals(4, buffer.length());
+
+        // the emoji is 2 columns wide, and both of its chars are moved over at once
+        assertEquals(ESC + "[1D", type("\u0002"));
+        assertEquals(ESC + "[2D", type("\u0002"));
+        assertEquals(1, buffer.cursor());
+
+        assertEquals("X" + emoji + "b" + ESC + "[3D", type("X"));
+
+        // delete removes the entire pair
+        assertEquals("b" + ESC + "[K" + ESC + "[1D", type("\u0004"));
+        assertEquals("aXb", buffer.toString());
+    }
+
+    @Test
+    public void testWideCharacters() {
+        final String wide = "\u4E2D";
+
+        type("a" + wide + "b");
+        assertEquals(4, buffer.endColumn());
+
+        type("\u0002");
+
+        // backspace over the wide character moves back 2 columns, and erases the extra column at the end of the line
+        assertEquals(ESC + "[2D" + "b" + ESC + "[K" + ESC + "[1D", type("\u007F"));
+        assertEquals("ab", buffer.toString());
+        assertEquals(1, buffer.cursorColumn());
+    }
+
+    @Test
+    public void testUnknownSequencesAreIgnored() {
+        type("abc");
+
+        // F5
+        assertEquals("", type(ESC + "[15~"));
+        assertEquals("abc", buffer.toString());
+
+        // a sequence that is too long is given up on, and what follows it is typed
+        assertEquals("d", type(ESC + "[11111111111111111" + "d"));
+        assertEquals("abcd", buffer.toString());
+    }
+
+    @Test
+    public void testMultipleLines() {
+        LineBuffer other = new LineBuffer();
+        List<LineBuffer> both = Arrays.asList(other, buffer);
+
+        for (char c : "one two".toCharArray()) {
+            editor.process(c, both);
+        }
+        editor.process(23, both); // Ctrl-W
+        editor.process('x', both);
+
+        assertEquals("one x", other.toString());
+        assertEquals("one x", buffer.toString());
+    }
+
+    @Test
+    public void testWithoutEcho() {
+        Console.ENABLE_ECHO = false;
+
+        assertEquals("", type("secret" + "\u0002" + "\u007F"));
+        assertEquals("secrt", buffer.toString());
+    }
+
+    @Test
+    public void testEndLine() {
+        type("hello");
+        type(ESC + "[H");
+
+        output.reset();
+        editor.endLine(buffers);
+
+        // the cursor moves to the end of the line before the new line
+        assertEquals(ESC + "[5C" + "\n", new String(output.toByteArray(), UTF_8));
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.console.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Test;
+
+/**
+ * Tests for how the input of the {@link SupportedTerminal} class is given to the threads that read it.
+ */
+public class SupportedTerminalTest {
+    private static class TestTerminal extends SupportedTerminal {
+        // the most input that is returned by one read, like a real terminal. Larger input takes more than one read.
+        private static final int READ_SIZE = 1000;
+
+        private final BlockingQueue<String> input = new LinkedBlockingQueue<String>();
+
+        private int[] codePoints = new int[0];
+        private int offset = 0;
+
+        void type(String text) {
+            input.add(text);
+        }
+
+        @Override
+        void doSetInterruptEnabled(final boolean enabled) {
+        }
+
+        @Override
+        protected void doSetEchoEnabled(final boolean enabled) {
+        }
+
+        @Override
+        public void restore() {
+        }
+
+        @Override
+        protected TerminalSize querySize() {
+            return new TerminalSize(80, 24);
+        }
+
+        @Override
+        protected int doRead(final int[] buffer) {
+            if (offset == codePoints.length) {
+                String text;
+                try {
+                    text = input.take();
+                } catch (InterruptedException e) {
+                    return -1;
+                }
+
+                // nothing more to type
+                if (text.isEmpty()) {
+                    return -1;
+                }
+
+                codePoints = text.codePoints().toArray();
+                offset = 0;
+            }
+
+            int length = Math.min(Math.min(codePoints.length - offset, buffer.length), READ_SIZE);
+            System.arraycopy(codePoints, offset, buffer, 0, length);
+            offset += length;
+            return length;
+        }
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Waits until the thread waits for input (on the lock of the terminal, instead of on a latch of the test)
+     */
+    private static void awaitReading(Thread thread) throws InterruptedException {
+        while ((thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) ||
+               LockSupport.getBlocker(thread) != null) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testReadThenReadLineThenRead() throws InterruptedException {
+        final TestTerminal terminal = new TestTerminal();
+        Thread runner = new Thread(terminal);
+        runner.start();
+
+        // type-ahead is kept between calls
+        terminal.type("ab");
+        assertEquals('a', terminal.read());
+        assertEquals('b', terminal.read());
+
+        // the line input of that batch is processed after it was given to read()
+        awaitWaiting(runner);
+
+        final String[] line = new String[1];
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                line[0] = new String(terminal.readLineChars());
+            }
+        });
+        reader.start();
+        awaitReading(reader);
+
+        terminal.type("secret\n");
+        reader.join();
+        assertEquals("secret", line[0]);
+
+        // the line is not given to read() afterwards
+        terminal.type("c");
+        assertEquals('c', terminal.read());
+
+        terminal.type("");
+        runner.join();
+    }
+
+    @Test(timeout = 10000)
+    public void testBurst() throws InterruptedException {
+        final TestTerminal terminal = new TestTerminal();
+        Thread runner = new Thread(terminal);
+        runner.start();
+
+        // more than one read of the terminal (and of the input batch), with surrogate pairs that are read one char at a time
+        StringBuilder burst = new StringBuilder();
+        for (int i = 0; i < 3500; i++) {
+            if (i % 100 == 99) {
+                burst.append("\uD83D\uDE00");
+            }
+            else {
+                burst.append((char) ('a' + i % 26));
+            }
+        }
+
+        final StringBuilder read = new StringBuilder();
+        final int length = burst.length();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (read.length() < length) {
+                    read.append((char) terminal.read());
+                }
+            }
+        });
+        reader.start();
+        awaitReading(reader);
+
+        terminal.type(burst.toString());
+        reader.join();
+        assertEquals(burst.toString(), read.toString());
+
+        terminal.type("");
+        runner.join();
+    }
+
+    @Test(timeout = 10000)
+    public void testReadLineTimeout() throws InterruptedException {
+        final TestTerminal terminal = new TestTerminal();
+        Thread runner = new Thread(terminal);
+        runner.start();
+
+        final String[] lines = new String[2];
+        final CountDownLatch timedOut = new CountDownLatch(1);
+        final CountDownLatch readAgain = new CountDownLatch(1);
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                char[] chars = terminal.readLineChars(200, TimeUnit.MILLISECONDS);
+                lines[0] = chars == null ? null : new String(chars);
+                timedOut.countDown();
+
+                try {
+                    readAgain.await();
+                } catch (InterruptedException ignored) {
+                }
+                lines[1] = new String(terminal.readLineChars());
+            }
+        });
+        reader.start();
+        awaitReading(reader);
+
+        // what was typed before the timeout is kept for the next call (of the same thread)
+        terminal.type("ab");
+        timedOut.await();
+        assertNull(lines[0]);
+
+        // while nobody waits for a line, the input is not collected for the line (it is type-ahead for read())
+        terminal.type("xy");
+        assertEquals('x', terminal.read());
+        assertEquals('y', terminal.read());
+        awaitWaiting(runner);
+
+        readAgain.countDown();
+        awaitReading(reader);
+        terminal.type("c\n");
+        reader.join();
+        assertEquals("abc", lines[1]);
+
+        terminal.type("");
+        runner.join();
+    }
+}
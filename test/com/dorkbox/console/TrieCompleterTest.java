@@ -0,0 +1,126 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dorkbox.console;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import dorkbox.console.input.Candidates;
+import dorkbox.console.input.TrieCompleter;
+
+/**
+ * Tests for the {@link TrieCompleter} class.
+ */
+public class TrieCompleterTest {
+    private static List<CharSequence> find(TrieCompleter completer, String prefix) {
+        List<CharSequence> candidates = new ArrayList<CharSequence>();
+        assertEquals(completer.find(prefix, candidates, Integer.MAX_VALUE), candidates.size());
+        return candidates;
+    }
+
+    @Test
+    public void testFind() {
+        TrieCompleter completer = new TrieCompleter(Arrays.asList("web-2", "web-10", "db-1", "web", "web-1", "webapp"));
+        assertEquals(6, completer.size());
+
+        assertEquals(Arrays.<CharSequence>asList("web", "web-1", "web-10", "web-2", "webapp"), find(completer, "web"));
+        assertEquals(Arrays.<CharSequence>asList("web-1", "web-10"), find(completer, "web-1"));
+        assertEquals(Arrays.<CharSequence>asList("webapp"), find(completer, "weba"));
+        assertEquals(Arrays.<CharSequence>asList("db-1"), find(completer, "d"));
+        assertEquals(Collections.<CharSequence>emptyList(), find(completer, "webb"));
+        assertEquals(Collections.<CharSequence>emptyList(), find(completer, "web-100"));
+        assertEquals(6, find(completer, "").size());
+    }
+
+    @Test
+    public void testAdd() {
+        TrieCompleter completer = new TrieCompleter();
+        assertTrue(completer.add("metrics.cpu.user"));
+        assertTrue(completer.add("metrics.cpu"));
+        assertFalse(completer.add("metrics.cpu"));
+        assertTrue(completer.add("metrics.mem"));
+        assertTrue(completer.add("\ud83d\ude00 smile"));
+        assertEquals(4, completer.size());
+
+        assertEquals(Arrays.<CharSequence>asList("metrics.cpu", "metrics.cpu.user"), find(completer, "metrics.c"));
+        assertEquals(Arrays.<CharSequence>asList("\ud83d\ude00 smile"), find(completer, "\ud83d"));
+    }
+
+    @Test
+    public void testComplete() {
+        TrieCompleter completer = new TrieCompleter(Arrays.asList("host-a", "host-b", "status"));
+        Candidates candidates = new Candidates(10);
+
+        // only the word before the cursor is completed
+        assertEquals(7, completer.complete("status hos tail", 10, candidates));
+        assertEquals(Arrays.<CharSequence>asList("host-a", "host-b"), candidates.getListed());
+        assertEquals(2, candidates.size());
+        assertEquals("host-", candidates.getCommonPrefix().toString());
+
+        candidates = new Candidates(10);
+        assertEquals(-1, completer.complete("status x", 8, candidates));
+        assertTrue(candidates.isEmpty());
+    }
+
+    @Test
+    public void testLimit() {
+        TrieCompleter completer = new TrieCompleter(Arrays.asList("a1", "a2", "a3", "b", "metrics.cpu.user", "metrics.cpu.system"));
+
+        List<CharSequence> found = new ArrayList<CharSequence>();
+        assertEquals(3, completer.find("a", found, 2));
+        assertEquals(Arrays.<CharSequence>asList("a1", "a2"), found);
+
+        // the candidates that are not listed are counted, and are part of the common prefix
+        Candidates candidates = new Candidates(1);
+        assertEquals(0, completer.complete("", 0, candidates));
+        assertEquals(6, candidates.size());
+        assertEquals(Arrays.<CharSequence>asList("a1"), candidates.getListed());
+        assertEquals("", candidates.getCommonPrefix().toString());
+
+        candidates = new Candidates(1);
+        assertEquals(0, completer.complete("m", 1, candidates));
+        assertEquals(2, candidates.size());
+        assertEquals(Arrays.<CharSequence>asList("metrics.cpu.system"), candidates.getListed());
+        assertEquals("metrics.cpu.", candidates.getCommonPrefix().toString());
+    }
+
+    @Test
+    public void testManyCandidates() {
+        TrieCompleter completer = new TrieCompleter();
+        for (int i = 0; i < 300000; i++) {
+            completer.add("host-" + i + ".example.com");
+        }
+        assertEquals(300000, completer.size());
+
+        assertEquals(Arrays.<CharSequence>asList("host-12345.example.com"), find(completer, "host-12345."));
+        assertEquals(1 + 10 + 100, find(completer, "host-2999").size());
+
+        // only one screen of candidates is created
+        Candidates candidates = new Candidates(100);
+        assertEquals(0, completer.complete("", 0, candidates));
+        assertEquals(300000, candidates.size());
+        assertEquals(100, candidates.getListed().size());
+        assertEquals("host-", candidates.getCommonPrefix().toString());
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2026 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dorkbox.console;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import dorkbox.console.util.Utf8Decoder;
+
+/**
+ * Tests for the {@link Utf8Decoder} class.
+ */
+public class Utf8DecoderTest {
+    private static final Charset charset = Charset.forName("UTF-8");
+    private static final int R = Utf8Decoder.REPLACEMENT_CHARACTER;
+
+    @Test
+    public void testDecode() {
+        String text = "host-\u00e9\u3053\u3093 \ud83d\ude00!";
+        byte[] bytes = text.getBytes(charset);
+
+        assertArrayEquals(codePoints(text), decode(new Utf8Decoder(), bytes, 0, bytes.length));
+    }
+
+    @Test
+    public void testSplitSequences() {
+        String text = "a\u00e9\u3053\ud83d\ude00b";
+        byte[] bytes = text.getBytes(charset);
+
+        // every possible split point has to produce the same output
+        for (int split = 0; split <= bytes.length; split++) {
+            Utf8Decoder decoder = new Utf8Decoder();
+            int[] first = decode(decoder, bytes, 0, split);
+            int[] second = decode(decoder, bytes, split, bytes.length - split);
+
+            int[] all = Arrays.copyOf(first, first.length + second.length);
+            System.arraycopy(second, 0, all, first.length, second.length);
+
+            assertArrayEquals("split at " + split, codePoints(text), all);
+            assertFalse(decoder.isPending());
+        }
+    }
+
+    @Test
+    public void testMalformed() {
+        Utf8Decoder decoder = new Utf8Decoder();
+
+        // continuation byte without a start byte
+        assertArrayEquals(new int[] {R, 'a'}, decode(decoder, new byte[] {(byte) 0x80, 'a'}, 0, 2));
+
+        // overlong encoding of '/'
+        assertArrayEquals(new int[] {R}, decode(decoder, new byte[] {(byte) 0xC0, (byte) 0xAF}, 0, 2));
+
+        // encoded surrogate
+        assertArrayEquals(new int[] {R}, decode(decoder, new byte[] {(byte) 0xED, (byte) 0xA0, (byte) 0x80}, 0, 3));
+
+        // sequence cut short, by a byte in the next call
+        assertArrayEquals(new int[0], decode(decoder, new byte[] {(byte) 0xE3, (byte) 0x81}, 0, 2));
+        assertTrue(decoder.isPending());
+        assertArrayEquals(new int[] {R, 'x'}, decode(decoder, new byte[] {'x'}, 0, 1));
+        assertFalse(decoder.isPending());
+    }
+
+    private static int[] decode(Utf8Decoder decoder, byte[] bytes, int offset, int length) {
+        int[] codePoints = new int[length + 1];
+        int count = decoder.decode(bytes, offset, length, codePoints);
+        assertEquals(true, count <= length + 1);
+        return Arrays.copyOf(codePoints, count);
+    }
+
+    private static int[] codePoints(String text) {
+        int[] codePoints = new int[text.codePointCount(0, text.length())];
+        for (int i = 0, index = 0; i < text.length(); index++) {
+            codePoints[index] = text.codePointAt(i);
+            i += Character.charCount(codePoints[index]);
+        }
+        return codePoints;
+    }
+}